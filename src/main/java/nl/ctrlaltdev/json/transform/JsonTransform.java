@@ -18,6 +18,7 @@ package nl.ctrlaltdev.json.transform;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
 
 import nl.ctrlaltdev.json.transform.java.DocumentToJavaMapper;
 import nl.ctrlaltdev.json.transform.java.JavaToDocumentMapper;
@@ -37,6 +38,8 @@ import nl.ctrlaltdev.json.transform.print.JsonPrinter;
 import nl.ctrlaltdev.json.transform.select.Select;
 import nl.ctrlaltdev.json.transform.select.SelectBuilder;
 import nl.ctrlaltdev.json.transform.transforms.Transform;
+import nl.ctrlaltdev.json.transform.util.NodeFactory;
+import nl.ctrlaltdev.json.transform.util.NodeUtils;
 
 /**
  * Facade for the most important API's.
@@ -49,6 +52,10 @@ public class JsonTransform extends MappingBuilder {
 
     private static final JavaToDocumentMapper DOCUMENT_MAPPER = new PojoToDocumentMapper();
 
+    private static final JsonPrinter PRINTER = new JsonPrinter();
+
+    private static volatile JsonParser parser = new JsonParser();
+
     /**
      * @return the root path.
      */
@@ -157,7 +164,7 @@ public class JsonTransform extends MappingBuilder {
      * @return the Map/ArrayList/Value structure.
      */
     public static final Object parse(String document) {
-        return new JsonParser().parse(document);
+        return parser().parse(document);
     }
 
     /**
@@ -167,7 +174,7 @@ public class JsonTransform extends MappingBuilder {
      * @throws IOException when reading fails.
      */
     public static final Object parse(Reader input) throws IOException {
-        return new JsonParser().parse(input);
+        return parser().parse(input);
     }
 
     /**
@@ -177,7 +184,36 @@ public class JsonTransform extends MappingBuilder {
      * @throws IOException when reading fails.
      */
     public static final Object parse(InputStream input) throws IOException {
-        return new JsonParser().parse(input);
+        return parser().parse(input);
+    }
+
+    /**
+     * parses an UTF-8 encoded Json document into a Map/ArrayList/Value structure.
+     * @param document the document.
+     * @return the Map/ArrayList/Value structure.
+     */
+    public static final Object parse(byte[] document) {
+        return parser().parse(document);
+    }
+
+    /**
+     * parses an UTF-8 encoded Json document into a Map/ArrayList/Value structure.
+     * @param document the buffer holding the document between its position and limit.
+     * @return the Map/ArrayList/Value structure.
+     */
+    public static final Object parse(ByteBuffer document) {
+        return parser().parse(document);
+    }
+
+    /**
+     * parses an UTF-8 encoded Json file into a Map/ArrayList/Value structure.
+     * The file is memory mapped instead of streamed.
+     * @param file the file.
+     * @return the Map/ArrayList/Value structure.
+     * @throws IOException when reading fails.
+     */
+    public static final Object parse(java.nio.file.Path file) throws IOException {
+        return parser().parse(file);
     }
 
     /**
@@ -186,7 +222,16 @@ public class JsonTransform extends MappingBuilder {
      * @return the resulting string.
      */
     public static final String print(Object obj) {
-        return new JsonPrinter().toString(obj);
+        return PRINTER.toString(obj);
+    }
+
+    /**
+     * serializes a Map/ArrayList/Value structure to UTF-8 encoded json without formatting.
+     * @param obj the object to serialize.
+     * @return the resulting bytes.
+     */
+    public static final byte[] printBytes(Object obj) {
+        return PRINTER.toBytes(obj);
     }
 
     /**
@@ -195,7 +240,7 @@ public class JsonTransform extends MappingBuilder {
      * @return the resulting string.
      */
     public static final String printPretty(Object obj) {
-        return new JsonPrinter().toPrettyString(obj);
+        return PRINTER.toPrettyString(obj);
     }
 
     /**
@@ -228,4 +273,17 @@ public class JsonTransform extends MappingBuilder {
         return STRICT_JAVA_MAPPER.toJava(type, document);
     }
 
+    /**
+     * @return the shared parser, replaced when the default node factory has changed.
+     */
+    private static JsonParser parser() {
+        JsonParser result = parser;
+        NodeFactory factory = NodeUtils.getNodeFactory();
+        if (result.getFactory() != factory) {
+            result = new JsonParser(factory);
+            parser = result;
+        }
+        return result;
+    }
+
 }
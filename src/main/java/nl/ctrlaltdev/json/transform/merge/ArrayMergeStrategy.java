@@ -18,6 +18,7 @@ package nl.ctrlaltdev.json.transform.merge;
 import java.util.List;
 
 import nl.ctrlaltdev.json.transform.path.Path;
+import nl.ctrlaltdev.json.transform.util.NodeFactory;
 import nl.ctrlaltdev.json.transform.util.NodeUtils;
 import nl.ctrlaltdev.json.transform.visitor.AbstractVisitor;
 import nl.ctrlaltdev.json.transform.visitor.impl.IdentityVisitor;
@@ -28,9 +29,15 @@ import nl.ctrlaltdev.json.transform.visitor.impl.IdentityVisitor;
 public class ArrayMergeStrategy extends AbstractVisitor implements MergeStrategy {
 
     private final Path targetPath;
+    private final NodeFactory factory;
 
     public ArrayMergeStrategy(Path target) {
+        this(target, NodeUtils.getNodeFactory());
+    }
+
+    public ArrayMergeStrategy(Path target, NodeFactory factory) {
         this.targetPath = target;
+        this.factory = factory;
     }
 
     @SuppressWarnings("unchecked")
@@ -39,13 +46,13 @@ public class ArrayMergeStrategy extends AbstractVisitor implements MergeStrategy
         Object value = targetPath.get(target);
         if (NodeUtils.isNull(value)) {
             targetPath.create(target);
-            targetPath.set(target, NodeUtils.newArray());
+            targetPath.set(target, factory.newArray());
             value = targetPath.get(target);
         }
         if (NodeUtils.isArray(value)) {
             List<Object> array = (List<Object>) value;
             final Path destinationRoot = targetPath.enter(array.size()).create(target);
-            Object result = visit(source, new IdentityVisitor());
+            Object result = visit(source, new IdentityVisitor(factory));
             return destinationRoot.set(target, result);
         } else {
             throw new MergeStrategyException(targetPath);
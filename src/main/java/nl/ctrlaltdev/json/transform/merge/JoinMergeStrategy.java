@@ -16,6 +16,7 @@
 package nl.ctrlaltdev.json.transform.merge;
 
 import nl.ctrlaltdev.json.transform.path.Path;
+import nl.ctrlaltdev.json.transform.util.NodeFactory;
 import nl.ctrlaltdev.json.transform.util.NodeUtils;
 import nl.ctrlaltdev.json.transform.visitor.AbstractVisitor;
 import nl.ctrlaltdev.json.transform.visitor.impl.MergeVisitor;
@@ -26,20 +27,26 @@ import nl.ctrlaltdev.json.transform.visitor.impl.MergeVisitor;
 public class JoinMergeStrategy extends AbstractVisitor implements MergeStrategy {
 
     private Path targetPath;
+    private final NodeFactory factory;
 
     public JoinMergeStrategy(Path target) {
+        this(target, NodeUtils.getNodeFactory());
+    }
+
+    public JoinMergeStrategy(Path target, NodeFactory factory) {
         this.targetPath = target;
+        this.factory = factory;
     }
 
     @Override
     public Object merge(Object source, Object target) {
         if (NodeUtils.isNull(targetPath.get(target))) {
             targetPath.create(target);
-            Object result = visit(source, new MergeVisitor());
+            Object result = visit(source, new MergeVisitor(factory));
             return targetPath.set(target, result);
         } else {
             Object root = targetPath.get(target);
-            Object result = visit(source, new MergeVisitor(), root);
+            Object result = visit(source, new MergeVisitor(factory), root);
             return targetPath.set(target, result);
         }
     }
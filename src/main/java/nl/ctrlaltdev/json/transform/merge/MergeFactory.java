@@ -16,6 +16,7 @@
 package nl.ctrlaltdev.json.transform.merge;
 
 import nl.ctrlaltdev.json.transform.path.Path;
+import nl.ctrlaltdev.json.transform.util.NodeFactory;
 
 public class MergeFactory {
 
@@ -27,10 +28,18 @@ public class MergeFactory {
         return new JoinMergeStrategy(target);
     }
 
+    public static MergeStrategy join(Path target, NodeFactory factory) {
+        return new JoinMergeStrategy(target, factory);
+    }
+
     public static MergeStrategy toArray(Path target) {
         return new ArrayMergeStrategy(target);
     }
 
+    public static MergeStrategy toArray(Path target, NodeFactory factory) {
+        return new ArrayMergeStrategy(target, factory);
+    }
+
     public static MergeStrategy overwrite() {
         return overwrite(Path.root());
     }
@@ -39,4 +48,8 @@ public class MergeFactory {
         return new OverwriteMergeStrategy(target);
     }
 
+    public static MergeStrategy overwrite(Path target, NodeFactory factory) {
+        return new OverwriteMergeStrategy(target, factory);
+    }
+
 }
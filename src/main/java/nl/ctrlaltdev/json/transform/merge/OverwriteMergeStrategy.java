@@ -16,6 +16,8 @@
 package nl.ctrlaltdev.json.transform.merge;
 
 import nl.ctrlaltdev.json.transform.path.Path;
+import nl.ctrlaltdev.json.transform.util.NodeFactory;
+import nl.ctrlaltdev.json.transform.util.NodeUtils;
 import nl.ctrlaltdev.json.transform.visitor.AbstractVisitor;
 import nl.ctrlaltdev.json.transform.visitor.impl.IdentityVisitor;
 
@@ -27,15 +29,21 @@ import nl.ctrlaltdev.json.transform.visitor.impl.IdentityVisitor;
 public class OverwriteMergeStrategy extends AbstractVisitor implements MergeStrategy {
 
     private final Path targetPath;
+    private final NodeFactory factory;
 
     public OverwriteMergeStrategy(Path target) {
+        this(target, NodeUtils.getNodeFactory());
+    }
+
+    public OverwriteMergeStrategy(Path target, NodeFactory factory) {
         this.targetPath = target;
+        this.factory = factory;
     }
 
     @Override
     public Object merge(Object source, Object target) {
         targetPath.create(target);
-        Object result = visit(source, new IdentityVisitor());
+        Object result = visit(source, new IdentityVisitor(factory));
         return targetPath.set(target, result);
     }
 
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.JsonTokenType;
+import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.ParserException;
+
+/**
+ * keeps track of the structure of the document and decodes the current token on demand.
+ * Subclasses scan the input and report the tokens they find.
+ */
+abstract class AbstractTokenSource implements JsonTokenSource {
+
+    private final JsonTokenizer tokenizer;
+    private final NameCache names;
+    private final List<JsonTokenType> stack = new ArrayList<JsonTokenType>();
+    private boolean expectName = false;
+    private boolean quoted;
+    private boolean decoded;
+    private JsonTokenType type;
+    private Object value;
+
+    protected AbstractTokenSource(JsonTokenizer tokenizer) {
+        this.tokenizer = tokenizer;
+        this.names = tokenizer.newNameCache();
+    }
+
+    @Override
+    public final JsonTokenType next() throws IOException {
+        value = null;
+        decoded = false;
+        type = advance();
+        if (type == null && !stack.isEmpty()) {
+            throw new ParserException("Unexpected end of document", getPosition());
+        }
+        return type;
+    }
+
+    @Override
+    public final JsonTokenType getType() {
+        return type;
+    }
+
+    @Override
+    public final Object getValue() {
+        if (!decoded && (type == JsonTokenType.NAME || type == JsonTokenType.VALUE)) {
+            if (type == JsonTokenType.NAME && names != null) {
+                value = decodeName(names);
+            } else {
+                value = quoted ? decodeString() : tokenizer.toValue(getText(), getPosition());
+            }
+            decoded = true;
+        }
+        return value;
+    }
+
+    @Override
+    public final void skipChildren() throws IOException {
+        if (type != JsonTokenType.OBJECT_START && type != JsonTokenType.ARRAY_START) {
+            throw new IllegalStateException("Expected the start of an object or array, got " + type);
+        }
+        value = null;
+        decoded = false;
+        type = end(skipStructure() == '}' ? JsonTokenType.OBJECT_END : JsonTokenType.ARRAY_END);
+    }
+
+    @Override
+    public final void skipValue() throws IOException {
+        if (type != JsonTokenType.NAME) {
+            throw new IllegalStateException("Expected a name, got " + type);
+        }
+        skipNextValue();
+        colon();
+        type = JsonTokenType.VALUE;
+        value = null;
+        decoded = true;
+    }
+
+    /**
+     * skips the value of the current NAME token like skipValue, but keeps its text.
+     * @param parser the parser that decodes the text on demand.
+     * @return the text of the value as it appears in the input.
+     * @throws IOException when reading fails.
+     */
+    final RawJson captureValue(JsonParser parser) throws IOException {
+        if (type != JsonTokenType.NAME) {
+            throw new IllegalStateException("Expected a name, got " + type);
+        }
+        RawJson result = captureNextValue(parser);
+        colon();
+        type = JsonTokenType.VALUE;
+        value = null;
+        decoded = true;
+        return result;
+    }
+
+    /**
+     * skips the children of the current OBJECT_START or ARRAY_START token like skipChildren, but keeps their text.
+     * @param parser the parser that decodes the text on demand.
+     * @return the text of the object or array as it appears in the input.
+     * @throws IOException when reading fails.
+     */
+    final RawJson captureChildren(JsonParser parser) throws IOException {
+        if (type != JsonTokenType.OBJECT_START && type != JsonTokenType.ARRAY_START) {
+            throw new IllegalStateException("Expected the start of an object or array, got " + type);
+        }
+        JsonTokenType endType = type == JsonTokenType.OBJECT_START ? JsonTokenType.OBJECT_END : JsonTokenType.ARRAY_END;
+        RawJson result = captureStructure(parser);
+        value = null;
+        decoded = false;
+        type = end(endType);
+        return result;
+    }
+
+    /**
+     * scans the input up to and including the next token.
+     * @return the type of the token or null at the end of the input.
+     * @throws IOException when reading fails.
+     */
+    protected abstract JsonTokenType advance() throws IOException;
+
+    /**
+     * skips the input up to and including the bracket that closes the current object or array.
+     * Only quotes and escapes are interpreted, nested brackets are counted but not matched.
+     * @return the closing bracket.
+     * @throws IOException when reading fails.
+     */
+    protected abstract char skipStructure() throws IOException;
+
+    /**
+     * skips the colon and the value that follow a name.
+     * @throws IOException when reading fails.
+     */
+    protected abstract void skipNextValue() throws IOException;
+
+    /**
+     * skips the value that follows a name like skipNextValue and returns its text.
+     * @param parser the parser that decodes the text on demand.
+     * @return the text.
+     * @throws IOException when reading fails.
+     */
+    protected abstract RawJson captureNextValue(JsonParser parser) throws IOException;
+
+    /**
+     * skips the current object or array like skipStructure and returns its text, brackets included.
+     * @param parser the parser that decodes the text on demand.
+     * @return the text.
+     * @throws IOException when reading fails.
+     */
+    protected abstract RawJson captureStructure(JsonParser parser) throws IOException;
+
+    /**
+     * @return the current quoted token as a String.
+     */
+    protected abstract String decodeString();
+
+    /**
+     * @param names the name cache.
+     * @return the current quoted token as a shared String from the cache.
+     */
+    protected abstract String decodeName(NameCache names);
+
+    /**
+     * drops the references to the input, so a pooled source does not keep it reachable.
+     */
+    protected abstract void detach();
+
+    /**
+     * @return the approximate number of bytes held by the buffers of the source.
+     */
+    protected abstract int footprint();
+
+    /**
+     * @return the tokenizer the source was created for.
+     */
+    final JsonTokenizer getTokenizer() {
+        return tokenizer;
+    }
+
+    /**
+     * forgets the structure and the current token, so the source can scan a new document.
+     */
+    protected final void reset() {
+        stack.clear();
+        expectName = false;
+        type = null;
+        value = null;
+        decoded = false;
+    }
+
+    protected final JsonTokenType begin(JsonTokenType type) {
+        stack.add(type);
+        expectName = type == JsonTokenType.OBJECT_START;
+        return type;
+    }
+
+    protected final JsonTokenType end(JsonTokenType type) {
+        if (stack.isEmpty()) {
+            throw new ParserException("Unexpected " + type + " token ", getPosition());
+        }
+        JsonTokenType top = stack.remove(stack.size() - 1);
+        if (!top.matches(type)) {
+            throw new ParserException("Expected " + top + " token ", getPosition());
+        }
+        expectName = expectName();
+        return type;
+    }
+
+    protected final void separator() {
+        expectName = expectName();
+    }
+
+    protected final void colon() {
+        expectName = false;
+    }
+
+    /**
+     * to be called after scanning a quoted token.
+     * @return the type of the token.
+     */
+    protected final JsonTokenType quoted() {
+        quoted = true;
+        return expectName ? JsonTokenType.NAME : JsonTokenType.VALUE;
+    }
+
+    /**
+     * to be called before scanning an unquoted token.
+     * @return the type of the token.
+     */
+    protected final JsonTokenType unquoted() {
+        if (expectName) {
+            throw new ParserException("Expected a name, not a value", getPosition());
+        }
+        quoted = false;
+        return JsonTokenType.VALUE;
+    }
+
+    private boolean expectName() {
+        if (!stack.isEmpty()) {
+            return stack.get(stack.size() - 1) == JsonTokenType.OBJECT_START;
+        } else {
+            return false;
+        }
+    }
+
+}
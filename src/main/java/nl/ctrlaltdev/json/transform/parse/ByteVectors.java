@@ -0,0 +1,50 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+/**
+ * finds bytes with SIMD instructions where the runtime supports them.
+ * This version is never available, the version in META-INF/versions/21 of the jar uses the
+ * vector API when the jdk.incubator.vector module is added to the runtime.
+ */
+final class ByteVectors {
+
+    static final boolean AVAILABLE = isAvailable();
+
+    private ByteVectors() {
+    }
+
+    /**
+     * keeps AVAILABLE from being a constant, callers would otherwise inline false
+     * and never read the field of the version that is loaded.
+     */
+    private static boolean isAvailable() {
+        return false;
+    }
+
+    /**
+     * moves to the first quote or backslash, a vector at a time.
+     * @param bytes the bytes.
+     * @param pos the start.
+     * @param limit the end.
+     * @return the position of the first quote or backslash, or the position from which less than a vector
+     * remains. The sign bit is set if a non-ASCII byte was passed.
+     */
+    static int skipToQuoteOrBackslash(byte[] bytes, int pos, int limit) {
+        return pos;
+    }
+
+}
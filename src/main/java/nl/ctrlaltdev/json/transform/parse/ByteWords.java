@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * scans bytes eight at a time, packed in a long (SWAR). The words are read little endian,
+ * so the lowest bit set in a match mask belongs to the first matching byte.
+ * A match mask may contain false positives above the first match, never below it.
+ */
+final class ByteWords {
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH = 0x8080808080808080L;
+    private static final long QUOTES = ONES * '"';
+    private static final long BACKSLASHES = ONES * '\\';
+    private static final long SPACES = ONES * ' ';
+
+    private ByteWords() {
+    }
+
+    /**
+     * @param bytes the bytes.
+     * @return a little endian view for reading words at any offset.
+     */
+    static ByteBuffer wrap(byte[] bytes) {
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @param word eight bytes.
+     * @return the high bit of each byte that is a quote or a backslash.
+     */
+    static long quoteOrBackslash(long word) {
+        return zero(word ^ QUOTES) | zero(word ^ BACKSLASHES);
+    }
+
+    /**
+     * @param word eight bytes.
+     * @return bits set in each byte that is not a space, exact.
+     */
+    static long notSpace(long word) {
+        return word ^ SPACES;
+    }
+
+    /**
+     * @param word eight bytes.
+     * @param mask a match mask, not zero.
+     * @return true if a byte before the first match is not ASCII.
+     */
+    static boolean isNonAsciiBefore(long word, long mask) {
+        return (word & HIGH & ((mask & -mask) - 1)) != 0;
+    }
+
+    /**
+     * @param word eight bytes.
+     * @return true if a byte is not ASCII.
+     */
+    static boolean isNonAscii(long word) {
+        return (word & HIGH) != 0;
+    }
+
+    /**
+     * @param mask a match mask, not zero.
+     * @return the offset of the first matching byte.
+     */
+    static int first(long mask) {
+        return Long.numberOfTrailingZeros(mask) >>> 3;
+    }
+
+    private static long zero(long v) {
+        return (v - ONES) & ~v & HIGH;
+    }
+
+}
@@ -0,0 +1,405 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.JsonTokenType;
+import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.ParserException;
+
+/**
+ * scans character input in a window, copying runs of plain characters in bulk.
+ */
+final class CharTokenSource extends AbstractTokenSource {
+
+    /**
+     * size of the window the characters are scanned in.
+     */
+    private static final int BUFFER_SIZE = 16384;
+
+    private Reader reader;
+    private String string;
+    private char[] buf;
+    private final StringBuilder current = new StringBuilder();
+    private char[] raw = new char[0];
+    private int rawLength;
+    private int mark = -1;
+    private boolean capturing;
+    private int pos = 0;
+    private int limit = 0;
+    private long offset = 0;
+
+    CharTokenSource(JsonTokenizer tokenizer, Reader reader, String string) {
+        super(tokenizer);
+        this.reader = reader;
+        this.string = string;
+        this.buf = new char[string != null ? Math.max(1, Math.min(string.length(), BUFFER_SIZE)) : BUFFER_SIZE];
+    }
+
+    /**
+     * creates a source without input, documents are passed in with reset.
+     * @param tokenizer the tokenizer.
+     */
+    CharTokenSource(JsonTokenizer tokenizer) {
+        super(tokenizer);
+        this.reader = null;
+        this.string = null;
+    }
+
+    /**
+     * starts scanning a new document, keeping the buffers and the name cache.
+     * Only to be used on sources created without input.
+     * @param document the characters of the document.
+     * @param off the offset of the document in the array.
+     * @param len the length of the document.
+     * @param position the position reported for the first character of the document.
+     */
+    void reset(char[] document, int off, int len, long position) {
+        resetCapture();
+        this.buf = document;
+        this.pos = off;
+        this.limit = off + len;
+        this.offset = position - off;
+    }
+
+    /**
+     * starts reading a new document, keeping the window, the buffers and the name cache.
+     * Only to be used on sources created for a reader or a string.
+     * @param reader the input, or null.
+     * @param string the document, or null.
+     */
+    void reset(Reader reader, String string) {
+        resetCapture();
+        this.reader = reader;
+        this.string = string;
+        this.pos = 0;
+        this.limit = 0;
+        this.offset = 0;
+    }
+
+    private void resetCapture() {
+        reset();
+        mark = -1;
+        capturing = false;
+        rawLength = 0;
+    }
+
+    @Override
+    protected void detach() {
+        reader = null;
+        string = null;
+        pos = 0;
+        limit = 0;
+    }
+
+    @Override
+    protected int footprint() {
+        return ((buf != null ? buf.length : 0) + raw.length + current.capacity()) * 2;
+    }
+
+    @Override
+    protected JsonTokenType advance() throws IOException {
+        current.setLength(0);
+        while (pos < limit || fill()) {
+            char c = buf[pos++];
+            switch (c) {
+            case '"':
+                readString();
+                return quoted();
+            case '[':
+                return begin(JsonTokenType.ARRAY_START);
+            case ']':
+                return end(JsonTokenType.ARRAY_END);
+            case '{':
+                return begin(JsonTokenType.OBJECT_START);
+            case '}':
+                return end(JsonTokenType.OBJECT_END);
+            case ',':
+                separator();
+                break;
+            case ':':
+                colon();
+                break;
+            case ' ':
+            case '\n':
+            case '\r':
+            case '\t':
+                break;
+            default:
+                if (!JsonTokenizer.isSkip(c)) {
+                    pos--;
+                    JsonTokenType type = unquoted();
+                    readLiteral();
+                    return type;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    protected char skipStructure() throws IOException {
+        int level = 1;
+        while (pos < limit || fill()) {
+            char c = buf[pos++];
+            if (c == '"') {
+                skipString();
+            } else if (c == '[' || c == '{') {
+                level++;
+            } else if ((c == ']' || c == '}') && --level == 0) {
+                return c;
+            }
+        }
+        throw new ParserException("Unexpected end of document", getPosition());
+    }
+
+    @Override
+    protected void skipNextValue() throws IOException {
+        while (true) {
+            char c = read();
+            switch (c) {
+            case '"':
+                mark = pos - 1;
+                skipString();
+                return;
+            case '[':
+            case '{':
+                mark = pos - 1;
+                skipStructure();
+                return;
+            case ':':
+            case ' ':
+            case '\n':
+            case '\r':
+            case '\t':
+            case '\b':
+            case '\f':
+                break;
+            case ',':
+            case ']':
+            case '}':
+                throw new ParserException("Expected a value", getPosition());
+            default:
+                if (JsonTokenizer.isSkip(c)) {
+                    break;
+                }
+                mark = pos - 1;
+                while ((pos < limit || fill()) && !JsonTokenizer.isDelimiter(buf[pos])) {
+                    pos++;
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    protected RawJson captureNextValue(JsonParser parser) throws IOException {
+        capturing = true;
+        skipNextValue();
+        return captured(parser);
+    }
+
+    @Override
+    protected RawJson captureStructure(JsonParser parser) throws IOException {
+        capturing = true;
+        mark = pos - 1;
+        skipStructure();
+        return captured(parser);
+    }
+
+    private RawJson captured(JsonParser parser) {
+        RawJson result;
+        if (rawLength == 0) {
+            result = new RawJson(parser, new String(buf, mark, pos - mark));
+        } else {
+            saveRaw(pos);
+            result = new RawJson(parser, new String(raw, 0, rawLength));
+        }
+        capturing = false;
+        mark = -1;
+        rawLength = 0;
+        return result;
+    }
+
+    /**
+     * appends the captured part of the window to the raw buffer.
+     * @param end the end of the captured part.
+     */
+    private void saveRaw(int end) {
+        int len = end - mark;
+        if (rawLength + len > raw.length) {
+            raw = Arrays.copyOf(raw, Math.max(raw.length * 2, rawLength + len));
+        }
+        System.arraycopy(buf, mark, raw, rawLength, len);
+        rawLength += len;
+        mark = 0;
+    }
+
+    private void skipString() throws IOException {
+        while (true) {
+            while (pos < limit) {
+                char c = buf[pos++];
+                if (c == '"') {
+                    return;
+                } else if (c == '\\') {
+                    read();
+                }
+            }
+            if (!fill()) {
+                throw new ParserException("Unterminated string", getPosition());
+            }
+        }
+    }
+
+    @Override
+    protected String decodeString() {
+        return current.toString();
+    }
+
+    @Override
+    protected String decodeName(NameCache names) {
+        return names.get(current);
+    }
+
+    @Override
+    public CharSequence getText() {
+        return current;
+    }
+
+    @Override
+    public long getPosition() {
+        return offset + pos;
+    }
+
+    /**
+     * refills the window.
+     * @return false at the end of the input.
+     * @throws IOException when reading fails.
+     */
+    private boolean fill() throws IOException {
+        if (reader == null && string == null) {
+            return false;
+        }
+        if (capturing && mark >= 0) {
+            saveRaw(limit);
+        }
+        offset += limit;
+        pos = 0;
+        limit = 0;
+        if (string != null) {
+            int start = (int) offset;
+            int count = Math.min(buf.length, string.length() - start);
+            if (count > 0) {
+                string.getChars(start, start + count, buf, 0);
+                limit = count;
+            }
+        } else {
+            int count = reader.read(buf, 0, buf.length);
+            while (count == 0) {
+                count = reader.read(buf, 0, buf.length);
+            }
+            if (count > 0) {
+                limit = count;
+            }
+        }
+        return limit > 0;
+    }
+
+    private char read() throws IOException {
+        if (pos == limit && !fill()) {
+            throw new ParserException("Unexpected end of document", getPosition());
+        }
+        return buf[pos++];
+    }
+
+    private void readString() throws IOException {
+        while (true) {
+            int start = pos;
+            while (pos < limit) {
+                char c = buf[pos];
+                if (c == '"' || c == '\\') {
+                    break;
+                }
+                pos++;
+            }
+            current.append(buf, start, pos - start);
+            if (pos == limit) {
+                if (!fill()) {
+                    throw new ParserException("Unterminated string", getPosition());
+                }
+            } else if (buf[pos++] == '"') {
+                return;
+            } else {
+                handleEscape();
+            }
+        }
+    }
+
+    private void handleEscape() throws IOException {
+        char c = read();
+        switch (c) {
+        case 'b':
+            current.append('\b');
+            break;
+        case 'f':
+            current.append('\f');
+            break;
+        case 'n':
+            current.append('\n');
+            break;
+        case 'r':
+            current.append('\r');
+            break;
+        case 't':
+            current.append('\t');
+            break;
+        case 'u':
+            int code = 0;
+            for (int i = 0; i < 4; i++) {
+                int digit = Character.digit(read(), 16);
+                if (digit < 0) {
+                    throw new ParserException(getPosition());
+                }
+                code = (code << 4) | digit;
+            }
+            current.append((char) code);
+            break;
+        case '/':
+        case '\\':
+        case '"':
+            current.append(c);
+            break;
+        default:
+            throw new ParserException(getPosition());
+        }
+    }
+
+    private void readLiteral() throws IOException {
+        while (true) {
+            int start = pos;
+            while (pos < limit && !JsonTokenizer.isDelimiter(buf[pos])) {
+                pos++;
+            }
+            current.append(buf, start, pos - start);
+            if (pos < limit || !fill()) {
+                return;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.JsonTokenType;
+import nl.ctrlaltdev.json.transform.path.Path;
+import nl.ctrlaltdev.json.transform.select.jsonpath.JsonPathTokenizer;
+import nl.ctrlaltdev.json.transform.select.jsonpath.JsonPathTokenizer.JsonPathParseException;
+import nl.ctrlaltdev.json.transform.select.jsonpath.JsonPathTokenizer.JsonPathToken;
+import nl.ctrlaltdev.json.transform.select.jsonpath.NameType;
+
+/**
+ * iterates over the elements of a document that match a simple path, like $.items[*],
+ * while the document is being read. Each element is built as soon as it has been scanned,
+ * the rest of the document is never materialized.
+ * The path may consist of properties, indexes and wildcards.
+ */
+public class JsonElementIterator implements Iterator<Object> {
+
+    private final JsonParser parser;
+    private final JsonTokenSource tokens;
+    private final List<JsonPathToken> steps;
+    private int depth;
+    private boolean[] array = new boolean[8];
+    private int[] index = new int[8];
+    private String[] name = new String[8];
+    private Path[] paths = new Path[8];
+
+    private boolean ready;
+    private Object next;
+    private Path nextPath;
+    private Path path;
+
+    /**
+     * @param parser the parser that builds the elements.
+     * @param tokens the document.
+     * @param path the JsonPath of the elements, for example $.items[*].
+     */
+    public JsonElementIterator(JsonParser parser, JsonTokenSource tokens, String path) {
+        this(parser, tokens, compile(path));
+    }
+
+    /**
+     * @param parser the parser that builds the elements.
+     * @param tokens the document.
+     * @param path the path of the element.
+     */
+    public JsonElementIterator(JsonParser parser, JsonTokenSource tokens, Path path) {
+        this(parser, tokens, compile(path));
+    }
+
+    private JsonElementIterator(JsonParser parser, JsonTokenSource tokens, List<JsonPathToken> steps) {
+        this.parser = parser;
+        this.tokens = tokens;
+        this.steps = steps;
+        this.paths[0] = Path.root();
+    }
+
+    /**
+     * @return the path of the last element returned by next.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!ready) {
+            try {
+                next = advance();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            ready = true;
+        }
+        return nextPath != null;
+    }
+
+    @Override
+    public Object next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Object result = next;
+        path = nextPath;
+        next = null;
+        nextPath = null;
+        ready = false;
+        return result;
+    }
+
+    /**
+     * @return the remaining elements as a sequential stream.
+     */
+    public Stream<Object> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false);
+    }
+
+    private Object advance() throws IOException {
+        JsonTokenType type;
+        while ((type = tokens.next()) != null) {
+            switch (type) {
+            case NAME:
+                name[depth - 1] = (String) tokens.getValue();
+                break;
+            case ARRAY_END:
+            case OBJECT_END:
+                depth--;
+                break;
+            default:
+                if (depth > 0 && array[depth - 1]) {
+                    index[depth - 1]++;
+                }
+                if (depth > 0 && !matches(steps.get(depth - 1))) {
+                    skip(type);
+                } else if (depth == steps.size()) {
+                    nextPath = depth == 0 ? paths[0] : enter(paths[depth - 1]);
+                    return parser.build(tokens, type);
+                } else if (type != JsonTokenType.VALUE) {
+                    push(type);
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean matches(JsonPathToken step) {
+        switch (step.getNameType()) {
+        case PROPERTY:
+            return !array[depth - 1] && step.getArgument().equals(name[depth - 1]);
+        case INDEX:
+            return array[depth - 1] && step.getArgument().equals(index[depth - 1]);
+        case ANY_INDEX:
+            return array[depth - 1];
+        default:
+            return true;
+        }
+    }
+
+    private Path enter(Path parent) {
+        return array[depth - 1] ? parent.enter(index[depth - 1]) : parent.enter(name[depth - 1]);
+    }
+
+    private void push(JsonTokenType type) {
+        if (depth + 1 == array.length) {
+            array = Arrays.copyOf(array, array.length * 2);
+            index = Arrays.copyOf(index, index.length * 2);
+            name = Arrays.copyOf(name, name.length * 2);
+            paths = Arrays.copyOf(paths, paths.length * 2);
+        }
+        if (depth > 0) {
+            paths[depth] = enter(paths[depth - 1]);
+        }
+        depth++;
+        array[depth - 1] = type == JsonTokenType.ARRAY_START;
+        index[depth - 1] = -1;
+        name[depth - 1] = null;
+    }
+
+    private void skip(JsonTokenType type) throws IOException {
+        if (type != JsonTokenType.VALUE) {
+            tokens.skipChildren();
+        }
+    }
+
+    static List<JsonPathToken> compile(String path) {
+        List<JsonPathToken> steps = new ArrayList<JsonPathToken>();
+        for (JsonPathToken token : JsonPathTokenizer.tokenize(path)) {
+            switch (token.getNameType()) {
+            case ROOT_NODE:
+                if (!steps.isEmpty()) {
+                    throw new JsonPathParseException("Unexpected root", path, -1);
+                }
+                break;
+            case PROPERTY:
+            case INDEX:
+            case ANY_INDEX:
+            case ANY_PROPERTY_OR_INDEX_NODE:
+                steps.add(token);
+                break;
+            default:
+                throw new JsonPathParseException("Only properties, indexes and wildcards are supported", path, -1);
+            }
+        }
+        return steps;
+    }
+
+    static List<JsonPathToken> compile(Path path) {
+        List<JsonPathToken> steps = new ArrayList<JsonPathToken>();
+        for (Path p : path.getPath()) {
+            steps.add(new JsonPathToken(p.isIndex() ? NameType.INDEX : NameType.PROPERTY, p.getTop()));
+        }
+        return steps;
+    }
+
+}
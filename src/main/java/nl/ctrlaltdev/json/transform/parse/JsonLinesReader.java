@@ -0,0 +1,306 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.ParserException;
+
+/**
+ * reads newline delimited Json, one document per line.
+ * The lines are scanned in one growing buffer and parsed by a single token source,
+ * so the buffers and the name cache are shared by all records.
+ * Blank lines are skipped. A record that fails to parse is either reported as a ParserException
+ * or, when an ErrorListener is set, passed to the listener and skipped.
+ */
+public class JsonLinesReader implements Iterator<Object>, Closeable {
+
+    /**
+     * receives the records that could not be parsed.
+     */
+    public interface ErrorListener {
+        /**
+         * @param line the line number of the record, starting at 1.
+         * @param offset the offset of the record in bytes, or in characters when reading from a Reader.
+         * @param error the error.
+         */
+        void onError(long line, long offset, RuntimeException error);
+    }
+
+    private static final int BUFFER_SIZE = 32768;
+
+    private final JsonParser parser;
+    private final InputStream in;
+    private final Reader reader;
+    private final Utf8TokenSource bytes;
+    private final CharTokenSource chars;
+    private byte[] byteBuf;
+    private char[] charBuf;
+    private int start;
+    private int end;
+    private int limit;
+    private long bufferOffset;
+    private boolean eof;
+    private long lines;
+    private ErrorListener listener;
+
+    private boolean ready;
+    private boolean available;
+    private Object next;
+    private long nextLine;
+    private long nextOffset;
+    private long line;
+    private long offset = -1;
+
+    /**
+     * @param parser the parser that builds the records.
+     * @param in the UTF-8 encoded input.
+     */
+    public JsonLinesReader(JsonParser parser, InputStream in) {
+        this.parser = parser;
+        this.in = in;
+        this.reader = null;
+        this.byteBuf = new byte[BUFFER_SIZE];
+        this.bytes = new Utf8TokenSource(parser.getTokenizer(), byteBuf, 0, 0);
+        this.chars = null;
+    }
+
+    /**
+     * @param parser the parser that builds the records.
+     * @param reader the input.
+     */
+    public JsonLinesReader(JsonParser parser, Reader reader) {
+        this.parser = parser;
+        this.in = null;
+        this.reader = reader;
+        this.charBuf = new char[BUFFER_SIZE];
+        this.bytes = null;
+        this.chars = new CharTokenSource(parser.getTokenizer());
+    }
+
+    /**
+     * @param listener receives the records that failed to parse, which are then skipped,
+     * or null to throw a ParserException instead.
+     */
+    public void setErrorListener(ErrorListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return the line number of the last record returned by next, starting at 1.
+     */
+    public long getLine() {
+        return line;
+    }
+
+    /**
+     * @return the offset of the last record returned by next, in bytes or in characters
+     * when reading from a Reader, -1 before the first record.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!ready) {
+            try {
+                available = advance();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            ready = true;
+        }
+        return available;
+    }
+
+    @Override
+    public Object next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Object result = next;
+        next = null;
+        ready = false;
+        line = nextLine;
+        offset = nextOffset;
+        return result;
+    }
+
+    /**
+     * @return the remaining records as a sequential stream, closing the stream closes the input.
+     */
+    public Stream<Object> stream() {
+        Spliterator<Object> spliterator = Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED);
+        return StreamSupport.stream(spliterator, false).onClose(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    close();
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+        } else {
+            reader.close();
+        }
+    }
+
+    /**
+     * parses the next record into next, a record may be null.
+     * @return false at the end of the input.
+     */
+    private boolean advance() throws IOException {
+        while (nextLine()) {
+            long lineNumber = ++lines;
+            long position = bufferOffset + start;
+            int from = start;
+            start = Math.min(end + 1, limit);
+            if (isBlank(from, end)) {
+                continue;
+            }
+            try {
+                next = parse(from, end, position);
+                nextLine = lineNumber;
+                nextOffset = position;
+                return true;
+            } catch (RuntimeException ex) {
+                if (listener == null) {
+                    ParserException error = new ParserException("Invalid record on line " + lineNumber, position);
+                    error.initCause(ex);
+                    throw error;
+                }
+                listener.onError(lineNumber, position, ex);
+            }
+        }
+        return false;
+    }
+
+    private Object parse(int from, int to, long position) throws IOException {
+        AbstractTokenSource tokens;
+        if (bytes != null) {
+            bytes.reset(byteBuf, from, to - from, position);
+            tokens = bytes;
+        } else {
+            chars.reset(charBuf, from, to - from, position);
+            tokens = chars;
+        }
+        Object result = parser.build(tokens);
+        if (tokens.next() != null) {
+            throw new ParserException("Unexpected " + tokens.getType() + " after the record", tokens.getPosition());
+        }
+        return result;
+    }
+
+    /**
+     * finds the end of the line that starts at the start of the buffer, reading more input when needed.
+     * @return false at the end of the input.
+     * @throws IOException when reading fails.
+     */
+    private boolean nextLine() throws IOException {
+        int scan = start;
+        while (true) {
+            for (; scan < limit; scan++) {
+                if ((bytes != null ? byteBuf[scan] : charBuf[scan]) == '\n') {
+                    end = scan;
+                    return true;
+                }
+            }
+            if (eof) {
+                end = limit;
+                return start < limit;
+            }
+            scan -= start;
+            fill();
+        }
+    }
+
+    private void fill() throws IOException {
+        int length = bytes != null ? byteBuf.length : charBuf.length;
+        int remaining = limit - start;
+        if (remaining == length) {
+            length *= 2;
+        }
+        if (bytes != null) {
+            byte[] target = remaining == byteBuf.length ? Arrays.copyOf(byteBuf, length) : byteBuf;
+            System.arraycopy(byteBuf, start, target, 0, remaining);
+            byteBuf = target;
+        } else {
+            char[] target = remaining == charBuf.length ? Arrays.copyOf(charBuf, length) : charBuf;
+            System.arraycopy(charBuf, start, target, 0, remaining);
+            charBuf = target;
+        }
+        bufferOffset += start;
+        limit = remaining;
+        start = 0;
+        int count = 0;
+        while (count == 0) {
+            count = bytes != null ? in.read(byteBuf, limit, length - limit) : reader.read(charBuf, limit, length - limit);
+        }
+        if (count < 0) {
+            eof = true;
+        } else {
+            limit += count;
+        }
+    }
+
+    /**
+     * a line is blank when it only holds what the tokenizer skips as whitespace.
+     */
+    private boolean isBlank(int from, int to) {
+        for (int t = from; t < to; t++) {
+            if (bytes == null) {
+                if (!JsonTokenizer.isSkip(charBuf[t])) {
+                    return false;
+                }
+            } else if (byteBuf[t] < 0) {
+                return isBlank(new String(byteBuf, t, to - t, StandardCharsets.UTF_8));
+            } else if (!Utf8TokenSource.isSpace(byteBuf[t])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isBlank(String text) {
+        for (int t = 0; t < text.length(); t++) {
+            if (!JsonTokenizer.isSkip(text.charAt(t))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
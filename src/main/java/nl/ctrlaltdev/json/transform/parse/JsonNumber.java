@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Number that keeps the text it was parsed from and only converts it when a value is requested.
+ * Printing it reproduces the original text, so no precision is lost when numbers are passed through.
+ */
+public final class JsonNumber extends Number implements Comparable<JsonNumber> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String lexeme;
+    private transient boolean converted;
+    private transient boolean exactLong;
+    private transient long longValue;
+    private transient double doubleValue;
+
+    public JsonNumber(String lexeme) {
+        this.lexeme = lexeme;
+    }
+
+    /**
+     * @return true if the number has no fraction and no exponent.
+     */
+    public boolean isIntegral() {
+        for (int t = 0; t < lexeme.length(); t++) {
+            char c = lexeme.charAt(t);
+            if (c == '.' || c == 'e' || c == 'E') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int intValue() {
+        return (int) longValue();
+    }
+
+    @Override
+    public long longValue() {
+        convert();
+        return exactLong ? longValue : (long) doubleValue;
+    }
+
+    @Override
+    public float floatValue() {
+        return Float.parseFloat(lexeme);
+    }
+
+    @Override
+    public double doubleValue() {
+        convert();
+        return doubleValue;
+    }
+
+    public BigDecimal bigDecimalValue() {
+        return new BigDecimal(lexeme);
+    }
+
+    public BigInteger bigIntegerValue() {
+        return isIntegral() ? new BigInteger(lexeme) : bigDecimalValue().toBigInteger();
+    }
+
+    private void convert() {
+        if (!converted) {
+            if (JsonTokenizer.isPlainInteger(lexeme)) {
+                exactLong = true;
+                longValue = JsonTokenizer.parseDigits(lexeme);
+                doubleValue = longValue;
+            } else if (isIntegral()) {
+                // 19 digits may still fit, beyond the range longValue saturates like a double
+                try {
+                    longValue = Long.parseLong(lexeme);
+                    exactLong = true;
+                    doubleValue = longValue;
+                } catch (NumberFormatException ex) {
+                    doubleValue = Double.parseDouble(lexeme);
+                }
+            } else {
+                doubleValue = Double.parseDouble(lexeme);
+            }
+            converted = true;
+        }
+    }
+
+    @Override
+    public int compareTo(JsonNumber o) {
+        return bigDecimalValue().compareTo(o.bigDecimalValue());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof JsonNumber)) {
+            return false;
+        }
+        JsonNumber other = (JsonNumber) obj;
+        return lexeme.equals(other.lexeme) || compareTo(other) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return bigDecimalValue().stripTrailingZeros().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return lexeme;
+    }
+
+}
@@ -19,109 +19,452 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
-import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.JsonToken;
 import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.JsonTokenType;
+import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.ParserException;
+import nl.ctrlaltdev.json.transform.util.NodeFactory;
 import nl.ctrlaltdev.json.transform.util.NodeUtils;
 
 /**
  * parses Json data into the Map/List/Value structure.
+ * The tokens are pulled from the tokenizer one at a time while the structure is built.
+ * Parsers are immutable and thread safe, so one instance can be shared. The token sources
+ * and their buffers are pooled per thread, see TokenSourcePool.
  */
 public class JsonParser {
 
-    public class Scanner {
-        private int idx = 0;
-        private List<JsonToken> tokens;
+    private final JsonTokenizer tokenizer;
+    private final NodeFactory factory;
+    private final Projection projection;
+    private final JsonParser unprojected;
 
-        public Scanner(List<JsonToken> tokens) {
-            this.tokens = tokens;
+    public JsonParser() {
+        this(new JsonTokenizer());
+    }
+
+    public JsonParser(JsonTokenizer jsonTokenizer) {
+        this(jsonTokenizer, NodeUtils.getNodeFactory());
+    }
+
+    public JsonParser(NodeFactory factory) {
+        this(new JsonTokenizer(), factory);
+    }
+
+    public JsonParser(JsonTokenizer jsonTokenizer, NodeFactory factory) {
+        this(jsonTokenizer, factory, null);
+    }
+
+    /**
+     * @param projection the parts of the documents to build.
+     */
+    public JsonParser(Projection projection) {
+        this(new JsonTokenizer(), NodeUtils.getNodeFactory(), projection);
+    }
+
+    /**
+     * @param jsonTokenizer the tokenizer.
+     * @param factory creates the objects and arrays.
+     * @param projection the parts of the documents to build, other subtrees are skipped
+     * without creating tokens for them or, if the projection passes them through, kept as RawJson.
+     * Null builds the whole document. Passing through needs the token sources of JsonTokenizer itself,
+     * a tokenizer that returns its own JsonTokenSource is rejected with an IllegalArgumentException.
+     */
+    public JsonParser(JsonTokenizer jsonTokenizer, NodeFactory factory, Projection projection) {
+        this.tokenizer = jsonTokenizer;
+        this.factory = factory;
+        this.projection = projection;
+        this.unprojected = projection != null && projection.isPassThrough() ? new JsonParser(jsonTokenizer, factory) : null;
+    }
+
+    public final Object parse(InputStream in) throws IOException {
+        return buildPooled(TokenSourcePool.stream(tokenizer, in));
+    }
+
+    public final Object parse(InputStream in, Charset charset) throws IOException {
+        if (StandardCharsets.UTF_8.equals(charset)) {
+            return parse(in);
         }
+        return buildPooled(TokenSourcePool.chars(tokenizer, new InputStreamReader(in, charset), null));
+    }
 
-        public Scanner next() {
-            idx++;
-            return this;
+    /**
+     * parses an UTF-8 encoded document.
+     * @param document the document.
+     * @return the Map/List/Value structure.
+     */
+    public final Object parse(byte[] document) {
+        try {
+            return buildPooled(TokenSourcePool.bytes(tokenizer, document, 0, document.length));
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
         }
+    }
 
-        public JsonToken get() {
-            return tokens.get(idx);
+    /**
+     * parses an UTF-8 encoded document from the position to the limit of the buffer.
+     * @param document the document, heap or direct.
+     * @return the Map/List/Value structure.
+     */
+    public final Object parse(ByteBuffer document) {
+        try {
+            if (document.hasArray()) {
+                int off = document.arrayOffset() + document.position();
+                return buildPooled(TokenSourcePool.bytes(tokenizer, document.array(), off, document.remaining()));
+            }
+            return buildDocument(tokenizer.tokens(document));
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
         }
+    }
 
+    /**
+     * parses an UTF-8 encoded document that is one large array by splitting its elements over
+     * the common fork/join pool, see parseParallel(byte[], ForkJoinPool).
+     * @param document the document.
+     * @return the Map/List/Value structure.
+     */
+    public final Object parseParallel(byte[] document) {
+        return parseParallel(document, ForkJoinPool.commonPool());
     }
 
-    private JsonTokenizer tokenizer;
+    /**
+     * parses an UTF-8 encoded document that is one large array in parallel. The top level element
+     * boundaries are found first, ranges of elements are then parsed by the pool and the array is
+     * assembled in order. Other documents, and parsers with a projection, are parsed on the calling thread.
+     * Files larger than 2GB can be parsed with parseParallel(Path, ForkJoinPool).
+     * @param document the document.
+     * @param pool the pool that parses the elements.
+     * @return the Map/List/Value structure.
+     */
+    public final Object parseParallel(byte[] document, ForkJoinPool pool) {
+        try {
+            if (projection != null) {
+                return buildDocument(tokenizer.tokens(document));
+            }
+            return new ParallelArrayParser(this, document, 0, document.length).parse(pool);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
 
-    public JsonParser() {
-        this(new JsonTokenizer());
+    /**
+     * parses an UTF-8 encoded file that is one large array by splitting its elements over
+     * the common fork/join pool, see parseParallel(Path, ForkJoinPool).
+     * @param file the file.
+     * @return the Map/List/Value structure.
+     * @throws IOException when reading fails.
+     */
+    public final Object parseParallel(Path file) throws IOException {
+        return parseParallel(file, ForkJoinPool.commonPool());
     }
 
-    public JsonParser(JsonTokenizer jsonTokenizer) {
-        this.tokenizer = jsonTokenizer;
+    /**
+     * parses an UTF-8 encoded file that is one large array in parallel, files larger than 2GB included.
+     * One pass over the file splits the elements into ranges, the pool then parses the ranges from
+     * memory mapped regions and the array is assembled in order. Other documents, and parsers with
+     * a projection, are parsed on the calling thread.
+     * @param file the file.
+     * @param pool the pool that parses the elements.
+     * @return the Map/List/Value structure.
+     * @throws IOException when reading fails.
+     */
+    public final Object parseParallel(Path file, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (projection != null) {
+                return buildDocument(tokenizer.tokens(channel));
+            }
+            return new ParallelFileParser(this, channel).parse(pool);
+        }
     }
 
-    public final Object parse(InputStream in) throws IOException {
-        return build(tokenizer.tokenize(new InputStreamReader(in, Charset.forName("UTF-8"))));
+    /**
+     * indexes an UTF-8 encoded document in one pass and returns Map and List views on it,
+     * that decode names and values only when they are read.
+     * The views are not thread safe, they turn into objects and arrays of the node factory
+     * when they are modified. The projection does not apply.
+     * @param document the document, which must not be modified while the views are in use.
+     * @return the root value.
+     */
+    public final Object parseLazy(byte[] document) {
+        return new JsonTape(tokenizer, factory, document, 0, document.length).root();
     }
 
-    public final Object parse(InputStream in, Charset charset) throws IOException {
-        return build(tokenizer.tokenize(new InputStreamReader(in, charset)));
+    /**
+     * indexes a document and returns Map and List views on it, see parseLazy(byte[]).
+     * @param document the document.
+     * @return the root value.
+     */
+    public final Object parseLazy(String document) {
+        return parseLazy(document.getBytes(StandardCharsets.UTF_8));
     }
 
     public final Object parse(Reader reader) throws IOException {
-        return build(tokenizer.tokenize(reader));
+        return buildPooled(TokenSourcePool.chars(tokenizer, reader, null));
     }
 
     public final Object parse(String document) {
-        return build(tokenizer.tokenize(document));
+        try {
+            return buildPooled(TokenSourcePool.chars(tokenizer, null, document));
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * parses an UTF-8 encoded file by mapping it into memory, files larger than 2GB are mapped in regions.
+     * @param file the file.
+     * @return the Map/List/Value structure.
+     * @throws IOException when reading fails.
+     */
+    public final Object parse(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return buildDocument(tokenizer.tokens(channel));
+        }
+    }
+
+    /**
+     * reads newline delimited Json, one document per line.
+     * @param in the UTF-8 encoded input.
+     * @return an iterator over the documents.
+     */
+    public final JsonLinesReader lines(InputStream in) {
+        return new JsonLinesReader(this, in);
+    }
+
+    /**
+     * reads newline delimited Json, one document per line.
+     * @param reader the input.
+     * @return an iterator over the documents.
+     */
+    public final JsonLinesReader lines(Reader reader) {
+        return new JsonLinesReader(this, reader);
+    }
+
+    /**
+     * reads a newline delimited Json file, one document per line.
+     * @param file the UTF-8 encoded file.
+     * @return an iterator over the documents, to be closed by the caller.
+     * @throws IOException when opening the file fails.
+     */
+    public final JsonLinesReader lines(Path file) throws IOException {
+        return new JsonLinesReader(this, Files.newInputStream(file));
+    }
+
+    /**
+     * iterates over the elements matching the path while the document is read,
+     * only the elements are materialized.
+     * @param path a simple JsonPath, for example $.items[*].
+     * @param in the UTF-8 encoded document.
+     * @return an iterator over the elements.
+     */
+    public final JsonElementIterator elements(String path, InputStream in) {
+        return new JsonElementIterator(this, tokenizer.tokens(in), path);
+    }
+
+    /**
+     * iterates over the elements matching the path while the document is read,
+     * only the elements are materialized.
+     * @param path a simple JsonPath, for example $.items[*].
+     * @param reader the document.
+     * @return an iterator over the elements.
+     */
+    public final JsonElementIterator elements(String path, Reader reader) {
+        return new JsonElementIterator(this, tokenizer.tokens(reader), path);
+    }
+
+    /**
+     * creates a parser that is fed UTF-8 encoded chunks as they arrive and never blocks.
+     * @param listener receives every complete document.
+     * @return the push parser.
+     */
+    public final JsonPushParser push(JsonPushParser.Listener listener) {
+        return new JsonPushParser(this, listener);
+    }
+
+    /**
+     * creates a parser that is fed UTF-8 encoded chunks as they arrive and never blocks,
+     * only the elements matching the path are materialized.
+     * @param path a simple JsonPath, for example $.items[*].
+     * @param listener receives the elements.
+     * @return the push parser.
+     */
+    public final JsonPushParser push(String path, JsonPushParser.Listener listener) {
+        return new JsonPushParser(this, path, listener);
+    }
+
+    JsonTokenizer getTokenizer() {
+        return tokenizer;
     }
 
-    private Object build(List<JsonToken> tokens) {
-        return handleValue(new Scanner(tokens));
+    /**
+     * @return the factory that creates the objects and arrays.
+     */
+    public NodeFactory getFactory() {
+        return factory;
+    }
+
+    /**
+     * builds the document and returns the source to the pool of the thread.
+     */
+    private Object buildPooled(AbstractTokenSource tokens) throws IOException {
+        try {
+            return buildDocument(tokens);
+        } finally {
+            TokenSourcePool.release(tokens);
+        }
+    }
+
+    /**
+     * builds the document and checks that nothing but whitespace follows it.
+     * @param tokens the tokens.
+     * @return the Map/List/Value structure.
+     * @throws IOException when reading fails.
+     */
+    Object buildDocument(JsonTokenSource tokens) throws IOException {
+        Object result = build(tokens);
+        if (tokens.next() != null) {
+            throw new ParserException("Unexpected " + tokens.getType() + " after the document", tokens.getPosition());
+        }
+        return result;
+    }
+
+    Object build(JsonTokenSource tokens) throws IOException {
+        if (projection != null) {
+            if (unprojected != null && !(tokens instanceof AbstractTokenSource)) {
+                throw new IllegalArgumentException("Passing subtrees through needs the tokenizer's own token sources, got "
+                        + tokens.getClass().getName());
+            }
+            return handleProjectedValue(tokens, next(tokens), projection);
+        }
+        return handleValue(tokens, next(tokens));
     }
 
-    private Object handleValue(Scanner tokens) {
-        switch (tokens.get().getType()) {
+    /**
+     * builds the value that starts with the current token.
+     * @param tokens the tokens.
+     * @param type the type of the current token.
+     * @return the Map/List/Value structure.
+     * @throws IOException when reading fails.
+     */
+    Object build(JsonTokenSource tokens, JsonTokenType type) throws IOException {
+        return handleValue(tokens, type);
+    }
+
+    private JsonTokenType next(JsonTokenSource tokens) throws IOException {
+        JsonTokenType type = tokens.next();
+        if (type == null) {
+            throw new ParserException("Unexpected end of document", tokens.getPosition());
+        }
+        return type;
+    }
+
+    private Object handleValue(JsonTokenSource tokens, JsonTokenType type) throws IOException {
+        switch (type) {
         case OBJECT_START:
-            return handleObjectValue(tokens.next());
+            return handleObjectValue(tokens);
         case ARRAY_START:
-            return handleArrayValue(tokens.next());
+            return handleArrayValue(tokens);
         case VALUE:
-            Object result = tokens.get().getValue();
-            tokens.next();
-            return result;
+            return tokens.getValue();
         case ARRAY_END:
         case OBJECT_END:
         case NAME:
         default:
-            throw new RuntimeException(String.valueOf(tokens.get()));
+            throw new ParserException("Unexpected " + type, tokens.getPosition());
+        }
+    }
+
+    private Object handleArrayValue(JsonTokenSource tokens) throws IOException {
+        List<Object> array = factory.newArray();
+        JsonTokenType type;
+        while ((type = next(tokens)) != JsonTokenType.ARRAY_END) {
+            array.add(handleValue(tokens, type));
+        }
+        return array;
+    }
+
+    private Object handleObjectValue(JsonTokenSource tokens) throws IOException {
+        Map<String, Object> result = factory.newObject();
+        JsonTokenType type;
+        while ((type = next(tokens)) != JsonTokenType.OBJECT_END) {
+            String name = handleName(tokens, type);
+            result.put(name, handleValue(tokens, next(tokens)));
+        }
+        return result;
+    }
+
+    private Object handleProjectedValue(JsonTokenSource tokens, JsonTokenType type, Projection projection) throws IOException {
+        if (projection.isAll()) {
+            return handleValue(tokens, type);
+        }
+        switch (type) {
+        case OBJECT_START:
+            return handleProjectedObjectValue(tokens, projection);
+        case ARRAY_START:
+            return handleProjectedArrayValue(tokens, projection);
+        default:
+            return handleValue(tokens, type);
         }
     }
 
-    private Object handleArrayValue(Scanner tokens) {
-        List<Object> array = NodeUtils.newArray();
-        while (tokens.get().getType() != JsonTokenType.ARRAY_END) {
-            array.add(handleValue(tokens));
+    /**
+     * builds the projected elements, the other elements are passed through or left null so indexes are kept.
+     */
+    private Object handleProjectedArrayValue(JsonTokenSource tokens, Projection projection) throws IOException {
+        List<Object> array = factory.newArray();
+        JsonTokenType type;
+        while ((type = next(tokens)) != JsonTokenType.ARRAY_END) {
+            Projection child = projection.child(array.size());
+            if (child != null) {
+                array.add(handleProjectedValue(tokens, type, child));
+            } else if (unprojected != null) {
+                if (type == JsonTokenType.OBJECT_START || type == JsonTokenType.ARRAY_START) {
+                    array.add(((AbstractTokenSource) tokens).captureChildren(unprojected));
+                } else {
+                    array.add(tokens.getValue());
+                }
+            } else {
+                if (type == JsonTokenType.OBJECT_START || type == JsonTokenType.ARRAY_START) {
+                    tokens.skipChildren();
+                }
+                array.add(null);
+            }
         }
-        tokens.next();
         return array;
     }
 
-    private Object handleObjectValue(Scanner tokens) {
-        Map<String, Object> result = NodeUtils.newObject();
-        while (tokens.get().getType() != JsonTokenType.OBJECT_END) {
-            result.put(handleName(tokens), handleValue(tokens.next()));
+    private Object handleProjectedObjectValue(JsonTokenSource tokens, Projection projection) throws IOException {
+        Map<String, Object> result = factory.newObject();
+        JsonTokenType type;
+        while ((type = next(tokens)) != JsonTokenType.OBJECT_END) {
+            String name = handleName(tokens, type);
+            Projection child = projection.child(name);
+            if (child != null) {
+                result.put(name, handleProjectedValue(tokens, next(tokens), child));
+            } else if (unprojected != null) {
+                result.put(name, ((AbstractTokenSource) tokens).captureValue(unprojected));
+            } else {
+                tokens.skipValue();
+            }
         }
-        tokens.next();
         return result;
     }
 
-    private String handleName(Scanner next) {
-        if (next.get().getType() != JsonTokenType.NAME) {
-            throw new IllegalArgumentException("Expected name, got " + next.get());
+    private String handleName(JsonTokenSource tokens, JsonTokenType type) {
+        if (type != JsonTokenType.NAME) {
+            throw new IllegalArgumentException("Expected name, got " + type);
         }
-        return (String) next.get().getValue();
+        return (String) tokens.getValue();
     }
 
 }
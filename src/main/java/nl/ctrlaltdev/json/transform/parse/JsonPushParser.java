@@ -0,0 +1,522 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.ParserException;
+import nl.ctrlaltdev.json.transform.path.Path;
+import nl.ctrlaltdev.json.transform.select.jsonpath.JsonPathTokenizer.JsonPathToken;
+import nl.ctrlaltdev.json.transform.util.NodeFactory;
+
+/**
+ * parses UTF-8 encoded Json from chunks as they arrive, for example from a non blocking channel.
+ * The state of the scanner, including half read strings, escapes and literals, is kept between chunks
+ * so feed never waits for more input. Every complete document, or every element matching a simple path,
+ * is handed to the listener as soon as its last byte has been fed. Concatenated documents are supported.
+ * Instances are not thread safe.
+ */
+public class JsonPushParser {
+
+    /**
+     * receives the parsed values.
+     */
+    public interface Listener {
+        /**
+         * @param path the path of the element, the root for complete documents.
+         * @param value the Map/List/Value structure.
+         */
+        void onValue(Path path, Object value);
+    }
+
+    private static final int VALUE = 0;
+    private static final int STRING = 1;
+    private static final int ESCAPE = 2;
+    private static final int UNICODE = 3;
+    private static final int LITERAL = 4;
+
+    private final JsonTokenizer tokenizer;
+    private final NodeFactory factory;
+    private final NameCache names;
+    private final List<JsonPathToken> steps;
+    private final Listener listener;
+
+    private int state = VALUE;
+    private byte[] text = new byte[256];
+    private int textLength;
+    private boolean ascii;
+    private final StringBuilder chars = new StringBuilder();
+    private int code;
+    private int digits;
+
+    private int depth;
+    private boolean expectName;
+    private boolean[] array = new boolean[8];
+    private int[] index = new int[8];
+    private String[] name = new String[8];
+    private boolean[] named = new boolean[8];
+    private Object[] node = new Object[8];
+    private Path[] paths = new Path[8];
+    private int elementDepth = -1;
+    private Path elementPath;
+    private int skipLevel;
+    private boolean skipping;
+    private boolean quotedName;
+
+    private long offset;
+    private int chunkStart;
+    private byte[] window;
+
+    /**
+     * hands every complete document to the listener.
+     * @param parser the parser that configures the tokenizer and node factory.
+     * @param listener the listener.
+     */
+    public JsonPushParser(JsonParser parser, Listener listener) {
+        this(parser, JsonElementIterator.compile(Path.root()), listener);
+    }
+
+    /**
+     * hands the elements matching the path to the listener, the rest of the document is never materialized.
+     * @param parser the parser that configures the tokenizer and node factory.
+     * @param path a simple JsonPath of properties, indexes and wildcards, for example $.items[*].
+     * @param listener the listener.
+     */
+    public JsonPushParser(JsonParser parser, String path, Listener listener) {
+        this(parser, JsonElementIterator.compile(path), listener);
+    }
+
+    private JsonPushParser(JsonParser parser, List<JsonPathToken> steps, Listener listener) {
+        this.tokenizer = parser.getTokenizer();
+        this.factory = parser.getFactory();
+        this.names = tokenizer.newNameCache();
+        this.steps = steps;
+        this.listener = listener;
+        this.paths[0] = Path.root();
+    }
+
+    /**
+     * scans the remaining bytes of the chunk, the position of the buffer is moved to its limit.
+     * @param chunk the chunk, heap or direct.
+     */
+    public void feed(ByteBuffer chunk) {
+        if (chunk.hasArray()) {
+            feed(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+            ((Buffer) chunk).position(chunk.limit());
+        } else {
+            if (window == null) {
+                window = new byte[8192];
+            }
+            while (chunk.hasRemaining()) {
+                int len = Math.min(window.length, chunk.remaining());
+                chunk.get(window, 0, len);
+                feed(window, 0, len);
+            }
+        }
+    }
+
+    /**
+     * scans a chunk, the bytes are not retained.
+     * @param chunk the bytes.
+     * @param off the offset.
+     * @param len the length.
+     */
+    public void feed(byte[] chunk, int off, int len) {
+        int end = off + len;
+        int pos = off;
+        chunkStart = off;
+        while (pos < end) {
+            switch (state) {
+            case STRING:
+                pos = scanString(chunk, pos, end);
+                break;
+            case ESCAPE:
+                escape(chunk[pos], pos);
+                pos++;
+                break;
+            case UNICODE:
+                unicode(chunk[pos], pos);
+                pos++;
+                break;
+            case LITERAL:
+                pos = scanLiteral(chunk, pos, end);
+                break;
+            default:
+                structure(chunk[pos], pos);
+                pos++;
+            }
+        }
+        offset += len;
+    }
+
+    /**
+     * signals that no more chunks will follow, completes a trailing literal.
+     * @throws ParserException when a document is incomplete.
+     */
+    public void endOfInput() {
+        if (state == LITERAL) {
+            endLiteral(offset);
+        } else if (state != VALUE) {
+            throw new ParserException("Unterminated string", offset);
+        }
+        if (depth > 0 || skipLevel > 0) {
+            throw new ParserException("Unexpected end of document", offset);
+        }
+    }
+
+    /**
+     * @return true if the bytes fed so far form complete documents.
+     */
+    public boolean isComplete() {
+        return state == VALUE && depth == 0 && skipLevel == 0;
+    }
+
+    /**
+     * @return the number of bytes fed so far.
+     */
+    public long getPosition() {
+        return offset;
+    }
+
+    private long position(int pos) {
+        return offset + pos - chunkStart;
+    }
+
+    private void structure(byte c, int pos) {
+        switch (c) {
+        case ' ':
+        case '\n':
+        case '\r':
+        case '\t':
+        case '\b':
+        case '\f':
+            return;
+        case '"':
+            state = STRING;
+            textLength = 0;
+            ascii = true;
+            quotedName = expectName && skipLevel == 0;
+            if (quotedName) {
+                if (named[depth - 1]) {
+                    throw new ParserException("Expected a colon", position(pos));
+                }
+                skipping = false;
+            } else {
+                beginValue(false, pos);
+            }
+            return;
+        case '{':
+        case '[':
+            if (expectName && skipLevel == 0) {
+                throw new ParserException("Expected a name, not a value", position(pos));
+            }
+            beginValue(true, pos);
+            beginStructure(c == '[');
+            return;
+        case '}':
+        case ']':
+            endStructure(c == ']', pos);
+            return;
+        case ',':
+            expectName = skipLevel == 0 && depth > 0 && !array[depth - 1];
+            return;
+        case ':':
+            expectName = false;
+            return;
+        default:
+            if (Utf8TokenSource.isSpace(c)) {
+                return;
+            }
+            if (expectName && skipLevel == 0) {
+                throw new ParserException("Expected a name, not a value", position(pos));
+            }
+            state = LITERAL;
+            textLength = 0;
+            beginValue(false, pos);
+            if (!skipping) {
+                append(c);
+            }
+        }
+    }
+
+    /**
+     * decides whether the value that starts is built, skipped or walked into.
+     * Sets skipping for scalars, containers are handled by beginStructure.
+     * A value in an object must follow a name and a colon, like the pull parser requires.
+     */
+    private void beginValue(boolean structure, int pos) {
+        if (skipLevel > 0) {
+            skipping = true;
+            return;
+        }
+        if (depth > 0 && array[depth - 1]) {
+            index[depth - 1]++;
+        } else if (depth > 0) {
+            if (!named[depth - 1]) {
+                throw new ParserException("Expected a name", position(pos));
+            }
+            named[depth - 1] = false;
+        }
+        if (elementDepth >= 0) {
+            skipping = false;
+        } else if (depth > 0 && !matches(steps.get(depth - 1))) {
+            skipping = true;
+        } else if (depth == steps.size()) {
+            elementDepth = depth;
+            elementPath = depth == 0 ? paths[0] : enter(paths[depth - 1]);
+            skipping = false;
+        } else {
+            skipping = !structure;
+        }
+    }
+
+    private void beginStructure(boolean isArray) {
+        if (skipLevel > 0 || skipping) {
+            skipLevel++;
+            return;
+        }
+        if (depth + 1 == array.length) {
+            array = Arrays.copyOf(array, array.length * 2);
+            index = Arrays.copyOf(index, index.length * 2);
+            name = Arrays.copyOf(name, name.length * 2);
+            named = Arrays.copyOf(named, named.length * 2);
+            node = Arrays.copyOf(node, node.length * 2);
+            paths = Arrays.copyOf(paths, paths.length * 2);
+        }
+        if (elementDepth < 0 && depth > 0) {
+            paths[depth] = enter(paths[depth - 1]);
+        }
+        depth++;
+        array[depth - 1] = isArray;
+        index[depth - 1] = -1;
+        name[depth - 1] = null;
+        named[depth - 1] = false;
+        if (elementDepth >= 0) {
+            node[depth - 1] = isArray ? factory.newArray() : factory.newObject();
+        } else {
+            node[depth - 1] = null;
+        }
+        expectName = !isArray;
+    }
+
+    private void endStructure(boolean isArray, int pos) {
+        expectName = false;
+        if (skipLevel > 0) {
+            skipLevel--;
+            return;
+        }
+        if (depth == 0 || array[depth - 1] != isArray) {
+            throw new ParserException("Unexpected " + (isArray ? ']' : '}'), position(pos));
+        }
+        if (named[depth - 1]) {
+            throw new ParserException("Expected a value", position(pos));
+        }
+        depth--;
+        Object value = node[depth];
+        node[depth] = null;
+        if (elementDepth >= 0) {
+            endValue(value);
+        }
+    }
+
+    private void endValue(Object value) {
+        if (depth == elementDepth) {
+            elementDepth = -1;
+            Path path = elementPath;
+            elementPath = null;
+            listener.onValue(path, value);
+        } else {
+            add(value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void add(Object value) {
+        Object parent = node[depth - 1];
+        if (array[depth - 1]) {
+            ((List<Object>) parent).add(value);
+        } else {
+            ((Map<String, Object>) parent).put(name[depth - 1], value);
+        }
+    }
+
+    private int scanString(byte[] chunk, int pos, int end) {
+        int start = pos;
+        while (pos < end) {
+            byte c = chunk[pos];
+            if (c == '"' || c == '\\') {
+                break;
+            }
+            pos++;
+        }
+        if (!skipping) {
+            append(chunk, start, pos - start);
+        }
+        if (pos == end) {
+            return pos;
+        }
+        if (chunk[pos] == '\\') {
+            state = ESCAPE;
+        } else {
+            state = VALUE;
+            endString();
+        }
+        return pos + 1;
+    }
+
+    private void escape(byte c, int pos) {
+        state = STRING;
+        switch (c) {
+        case '"':
+        case '\\':
+        case '/':
+            break;
+        case 'b':
+            c = '\b';
+            break;
+        case 'f':
+            c = '\f';
+            break;
+        case 'n':
+            c = '\n';
+            break;
+        case 'r':
+            c = '\r';
+            break;
+        case 't':
+            c = '\t';
+            break;
+        case 'u':
+            state = UNICODE;
+            code = 0;
+            digits = 0;
+            return;
+        default:
+            throw new ParserException("Invalid escape", position(pos));
+        }
+        if (!skipping) {
+            append(c);
+        }
+    }
+
+    private void unicode(byte c, int pos) {
+        int digit = Character.digit((char) c, 16);
+        if (digit < 0) {
+            throw new ParserException("Invalid unicode escape", position(pos));
+        }
+        code = (code << 4) | digit;
+        if (++digits == 4) {
+            state = STRING;
+            if (!skipping) {
+                appendChar(code);
+            }
+        }
+    }
+
+    private void endString() {
+        if (quotedName) {
+            name[depth - 1] = names != null ? names.get(decodeText()) : decodeText().toString();
+            named[depth - 1] = true;
+            quotedName = false;
+        } else if (!skipping) {
+            endValue(ascii ? new String(text, 0, textLength, StandardCharsets.ISO_8859_1) : decodeText().toString());
+        }
+    }
+
+    private int scanLiteral(byte[] chunk, int pos, int end) {
+        int start = pos;
+        while (pos < end && !Utf8TokenSource.isDelimiter(chunk[pos])) {
+            pos++;
+        }
+        if (!skipping) {
+            append(chunk, start, pos - start);
+        }
+        if (pos < end) {
+            endLiteral(position(pos));
+        }
+        return pos;
+    }
+
+    private void endLiteral(long position) {
+        state = VALUE;
+        if (!skipping) {
+            endValue(tokenizer.toValue(decodeText(), position));
+        }
+    }
+
+    private CharSequence decodeText() {
+        chars.setLength(0);
+        Utf8TokenSource.decode(text, 0, textLength, chars);
+        return chars;
+    }
+
+    private boolean matches(JsonPathToken step) {
+        switch (step.getNameType()) {
+        case PROPERTY:
+            return !array[depth - 1] && step.getArgument().equals(name[depth - 1]);
+        case INDEX:
+            return array[depth - 1] && step.getArgument().equals(index[depth - 1]);
+        case ANY_INDEX:
+            return array[depth - 1];
+        default:
+            return true;
+        }
+    }
+
+    private Path enter(Path parent) {
+        return array[depth - 1] ? parent.enter(index[depth - 1]) : parent.enter(name[depth - 1]);
+    }
+
+    private void appendChar(int c) {
+        if (c < 0x80) {
+            append((byte) c);
+        } else if (c < 0x800) {
+            append((byte) (0xC0 | (c >> 6)));
+            append((byte) (0x80 | (c & 0x3F)));
+        } else {
+            append((byte) (0xE0 | (c >> 12)));
+            append((byte) (0x80 | ((c >> 6) & 0x3F)));
+            append((byte) (0x80 | (c & 0x3F)));
+        }
+    }
+
+    private void append(byte b) {
+        if (textLength == text.length) {
+            text = Arrays.copyOf(text, text.length * 2);
+        }
+        if (b < 0) {
+            ascii = false;
+        }
+        text[textLength++] = b;
+    }
+
+    private void append(byte[] src, int off, int len) {
+        if (textLength + len > text.length) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + len));
+        }
+        for (int t = off; t < off + len && ascii; t++) {
+            ascii = src[t] >= 0;
+        }
+        System.arraycopy(src, off, text, textLength, len);
+        textLength += len;
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.JsonTokenType;
+
+/**
+ * Cursor over the tokens of a Json document, without building the Map/List/Value structure.
+ * The current token is kept in reusable state, names and values are only decoded on request.
+ */
+public class JsonReader {
+
+    private final JsonTokenSource tokens;
+    private final StringBuilder names = new StringBuilder();
+    private int[] nameStart = new int[16];
+    private boolean[] hasName = new boolean[16];
+    private int depth = 0;
+    private JsonTokenType type;
+    private String name;
+
+    public JsonReader(String document) {
+        this(new JsonTokenizer().tokens(document));
+    }
+
+    public JsonReader(Reader document) {
+        this(new JsonTokenizer().tokens(document));
+    }
+
+    public JsonReader(JsonTokenSource tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * advances the cursor to the next token.
+     * @return the type of the token or null at the end of the document.
+     * @throws IOException when reading fails.
+     */
+    public JsonTokenType nextToken() throws IOException {
+        name = null;
+        type = tokens.next();
+        if (type != null) {
+            switch (type) {
+            case OBJECT_START:
+            case ARRAY_START:
+                enter();
+                break;
+            case OBJECT_END:
+            case ARRAY_END:
+                leave();
+                break;
+            case NAME:
+                names.setLength(nameStart[depth]);
+                names.append(tokens.getText());
+                hasName[depth] = true;
+                break;
+            default:
+                break;
+            }
+        }
+        return type;
+    }
+
+    /**
+     * @return the type of the current token.
+     */
+    public JsonTokenType currentToken() {
+        return type;
+    }
+
+    /**
+     * @return the name of the property the current token belongs to, null for array elements and the root.
+     */
+    public String currentName() {
+        int level = (type == JsonTokenType.OBJECT_START || type == JsonTokenType.ARRAY_START) ? depth - 1 : depth;
+        if (type == JsonTokenType.NAME) {
+            return (String) tokens.getValue();
+        }
+        if (name == null && level >= 0 && hasName[level]) {
+            name = names.substring(nameStart[level]);
+        }
+        return name;
+    }
+
+    /**
+     * @return the decoded value of the current NAME or VALUE token.
+     */
+    public Object currentValue() {
+        return tokens.getValue();
+    }
+
+    /**
+     * @return the text of the current NAME or VALUE token, only valid until the cursor moves.
+     */
+    public CharSequence currentText() {
+        return tokens.getText();
+    }
+
+    /**
+     * @return the number of objects and arrays the cursor is in.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * when positioned on the start of an object or array, advances the cursor to its end
+     * by balancing brackets, without producing tokens for the children. Does nothing for other tokens.
+     * @throws IOException when reading fails.
+     */
+    public void skipChildren() throws IOException {
+        if (type == JsonTokenType.OBJECT_START || type == JsonTokenType.ARRAY_START) {
+            tokens.skipChildren();
+            name = null;
+            type = tokens.getType();
+            leave();
+        }
+    }
+
+    private void enter() {
+        depth++;
+        if (depth == nameStart.length) {
+            nameStart = Arrays.copyOf(nameStart, depth * 2);
+            hasName = Arrays.copyOf(hasName, depth * 2);
+        }
+        nameStart[depth] = names.length();
+        hasName[depth] = false;
+    }
+
+    private void leave() {
+        names.setLength(nameStart[depth]);
+        depth--;
+    }
+
+}
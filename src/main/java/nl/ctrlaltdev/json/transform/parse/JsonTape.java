@@ -0,0 +1,453 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.ParserException;
+import nl.ctrlaltdev.json.transform.util.NodeFactory;
+
+/**
+ * structural index of an UTF-8 encoded document, the first stage of a two stage parser.
+ * One pass over the bytes records every value, name, object and array on a tape of longs,
+ * holding its type, its offset in the document and either its end offset or,
+ * for objects and arrays, the tape index just after its last child.
+ * The document is then accessed through Map and List views that decode names and values
+ * only when they are read. Literals are validated while indexing, so the tape rejects the documents the parser rejects.
+ * Views become ordinary Maps and Lists of the node factory on their first modification.
+ */
+final class JsonTape {
+
+    static final int OBJECT = 0;
+    static final int ARRAY = 1;
+    static final int STRING = 2;
+    static final int LITERAL = 3;
+
+    private static final long MASK = 0x7FFFFFFFL;
+
+    private final byte[] document;
+    private final JsonTokenizer tokenizer;
+    private final NodeFactory factory;
+    private long[] tape = new long[64];
+    private int size;
+    private final Literal literal = new Literal();
+    private final StringBuilder chars = new StringBuilder();
+
+    JsonTape(JsonTokenizer tokenizer, NodeFactory factory, byte[] document, int off, int len) {
+        this.tokenizer = tokenizer;
+        this.factory = factory;
+        this.document = document;
+        index(off, off + len);
+    }
+
+    /**
+     * @return the root value, a view for objects and arrays.
+     */
+    Object root() {
+        return value(0);
+    }
+
+    NodeFactory factory() {
+        return factory;
+    }
+
+    int type(int index) {
+        return (int) (tape[index] >>> 62);
+    }
+
+    /**
+     * @param index the tape index of a value.
+     * @return the tape index of the value after it, skipping all children.
+     */
+    int next(int index) {
+        int type = type(index);
+        return type == OBJECT || type == ARRAY ? second(index) : index + 1;
+    }
+
+    /**
+     * @param index the tape index of an object or array.
+     * @param step 2 for objects to collect the names, 1 for arrays.
+     * @return the tape indexes of the children.
+     */
+    int[] children(int index, int step) {
+        int count = 0;
+        int end = second(index);
+        for (int t = index + 1; t < end; t = next(t)) {
+            count++;
+        }
+        int[] result = new int[count / step];
+        int t = index + 1;
+        for (int i = 0; i < result.length; i++) {
+            result[i] = t;
+            t = step == 2 ? next(t + 1) : next(t);
+        }
+        return result;
+    }
+
+    /**
+     * @param index the tape index of an object.
+     * @return the tape indexes of the names of the object. A name that occurs more than once keeps
+     * the place of its first occurrence and gets the value of its last one, like repeated puts on a Map.
+     */
+    int[] names(int index) {
+        int[] names = children(index, 2);
+        if (names.length < 2) {
+            return names;
+        }
+        int mask = Integer.highestOneBit(names.length) * 4 - 1;
+        int[] slots = new int[mask + 1];
+        int[] hashes = new int[names.length];
+        int count = 0;
+        for (int t = 0; t < names.length; t++) {
+            int hash = nameHash(names[t]);
+            int h = hash & mask;
+            while (slots[h] != 0 && (hashes[slots[h] - 1] != hash || !string(names[slots[h] - 1]).equals(string(names[t])))) {
+                h = (h + 1) & mask;
+            }
+            if (slots[h] != 0) {
+                names[slots[h] - 1] = names[t];
+            } else {
+                hashes[count] = hash;
+                names[count++] = names[t];
+                slots[h] = count;
+            }
+        }
+        return count == names.length ? names : Arrays.copyOf(names, count);
+    }
+
+    Object value(int index) {
+        switch (type(index)) {
+        case OBJECT:
+            return new TapeMap(this, index);
+        case ARRAY:
+            return new TapeList(this, index);
+        case STRING:
+            return string(index);
+        default:
+            int start = first(index);
+            return tokenizer.toValue(new String(document, start, second(index) - start, StandardCharsets.ISO_8859_1), second(index));
+        }
+    }
+
+    String string(int index) {
+        int start = first(index) + 1;
+        int end = second(index);
+        for (int t = start; t < end; t++) {
+            byte c = document[t];
+            if (c < 0 || c == '\\') {
+                return decode(start, end);
+            }
+        }
+        return new String(document, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * decodes the UTF-8 runs and the escapes of a string into a builder that is reused,
+     * the escapes were checked while indexing.
+     */
+    private String decode(int start, int end) {
+        StringBuilder out = chars;
+        out.setLength(0);
+        int run = start;
+        for (int t = start; t < end; t++) {
+            if (document[t] != '\\') {
+                continue;
+            }
+            Utf8TokenSource.decode(document, run, t - run, out);
+            byte c = document[++t];
+            switch (c) {
+            case 'b':
+                out.append('\b');
+                break;
+            case 'f':
+                out.append('\f');
+                break;
+            case 'n':
+                out.append('\n');
+                break;
+            case 'r':
+                out.append('\r');
+                break;
+            case 't':
+                out.append('\t');
+                break;
+            case 'u':
+                int code = 0;
+                for (int i = 1; i <= 4; i++) {
+                    code = (code << 4) | Character.digit(document[t + i], 16);
+                }
+                out.append((char) code);
+                t += 4;
+                break;
+            default:
+                out.append((char) c);
+                break;
+            }
+            run = t + 1;
+        }
+        Utf8TokenSource.decode(document, run, end - run, out);
+        return out.toString();
+    }
+
+    boolean nameEquals(int index, String name) {
+        int start = first(index) + 1;
+        int end = second(index);
+        if (end - start < name.length()) {
+            return false;
+        }
+        for (int t = start; t < end; t++) {
+            byte c = document[t];
+            if (c < 0 || c == '\\') {
+                return string(index).equals(name);
+            }
+            if (t - start >= name.length() || name.charAt(t - start) != c) {
+                return false;
+            }
+        }
+        return end - start == name.length();
+    }
+
+    /**
+     * @return the hash code of the decoded name, computed from the bytes when the name has no escapes.
+     */
+    private int nameHash(int index) {
+        int hash = 0;
+        for (int t = first(index) + 1, end = second(index); t < end; t++) {
+            byte c = document[t];
+            if (c < 0 || c == '\\') {
+                hash = string(index).hashCode();
+                break;
+            }
+            hash = 31 * hash + c;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * rejects the escapes the token sources reject.
+     * @param pos the position after the backslash.
+     * @return the position after the escape.
+     */
+    private int checkEscape(int pos, int end) {
+        if (pos >= end) {
+            return pos;
+        }
+        switch (document[pos]) {
+        case 'b':
+        case 'f':
+        case 'n':
+        case 'r':
+        case 't':
+        case '/':
+        case '\\':
+        case '"':
+            return pos + 1;
+        case 'u':
+            for (int i = 1; i <= 4; i++) {
+                if (pos + i >= end || Character.digit(document[pos + i], 16) < 0) {
+                    throw new ParserException(pos + i + 1);
+                }
+            }
+            return pos + 5;
+        default:
+            throw new ParserException(pos + 1);
+        }
+    }
+
+    /**
+     * rejects a literal the tokenizer would reject when it is read.
+     * Keywords and numbers the standard tokenizer accepts are checked in place, other literals are converted once.
+     */
+    private void checkLiteral(int start, int end) {
+        if (tokenizer.getClass() == JsonTokenizer.class) {
+            literal.set(start, end);
+            if (JsonTokenizer.isNumber(literal)) {
+                // integers of more than 18 digits may not fit
+                if (literal.hasFraction() || JsonTokenizer.isPlainInteger(literal)) {
+                    return;
+                }
+            } else if ("true".contentEquals(literal) || "false".contentEquals(literal) || "null".contentEquals(literal)) {
+                return;
+            }
+        }
+        tokenizer.toValue(new String(document, start, end - start, StandardCharsets.ISO_8859_1), end);
+    }
+
+    private int first(int index) {
+        return (int) ((tape[index] >>> 31) & MASK);
+    }
+
+    private int second(int index) {
+        return (int) (tape[index] & MASK);
+    }
+
+    private int add(int type, int first, int second) {
+        if (size == tape.length) {
+            tape = Arrays.copyOf(tape, size * 2);
+        }
+        tape[size] = ((long) type << 62) | ((first & MASK) << 31) | (second & MASK);
+        return size++;
+    }
+
+    /**
+     * indexes the document, following the separator rules of the token sources:
+     * a quoted token is a name from the start of an object or a comma in it up to the colon.
+     * Misplaced commas and colons are tolerated where the parser tolerates them,
+     * everything the parser rejects is rejected here.
+     */
+    private void index(int pos, int end) {
+        int[] open = new int[32];
+        int[] counts = new int[32];
+        int depth = 0;
+        boolean expectName = false;
+        while (pos < end) {
+            byte c = document[pos];
+            switch (c) {
+            case ' ':
+            case '\n':
+            case '\r':
+            case '\t':
+            case '\b':
+            case '\f':
+                pos++;
+                continue;
+            case ',':
+                expectName = depth > 0 && type(open[depth - 1]) == OBJECT;
+                pos++;
+                continue;
+            case ':':
+                expectName = false;
+                pos++;
+                continue;
+            case '}':
+            case ']':
+                if (depth == 0 || type(open[depth - 1]) != (c == '}' ? OBJECT : ARRAY)) {
+                    throw new ParserException("Unexpected " + (char) c, pos);
+                }
+                if (c == '}' && (counts[depth - 1] & 1) != 0) {
+                    throw new ParserException("Expected a value", pos);
+                }
+                depth--;
+                tape[open[depth]] |= size & MASK;
+                expectName = depth > 0 && type(open[depth - 1]) == OBJECT;
+                pos++;
+                continue;
+            default:
+                if (Utf8TokenSource.isSpace(c)) {
+                    pos++;
+                    continue;
+                }
+                break;
+            }
+            if (depth == 0 && size > 0) {
+                throw new ParserException("Unexpected content after the document", pos);
+            }
+            if (expectName && c != '"' && c != '{' && c != '[') {
+                throw new ParserException("Expected a name, not a value", pos);
+            }
+            if (depth > 0) {
+                if (type(open[depth - 1]) == OBJECT) {
+                    // members alternate between a name and a value, a quoted token is a name until the colon
+                    boolean name = c == '"' && expectName;
+                    if ((counts[depth - 1] & 1) == 0 && !name) {
+                        throw new ParserException("Expected a name", pos);
+                    }
+                    if ((counts[depth - 1] & 1) != 0 && name) {
+                        throw new ParserException("Expected a colon", pos);
+                    }
+                }
+                counts[depth - 1]++;
+            }
+            if (c == '{' || c == '[') {
+                if (depth == open.length) {
+                    open = Arrays.copyOf(open, depth * 2);
+                    counts = Arrays.copyOf(counts, depth * 2);
+                }
+                open[depth] = add(c == '{' ? OBJECT : ARRAY, pos, 0);
+                counts[depth] = 0;
+                depth++;
+                expectName = c == '{';
+                pos++;
+            } else if (c == '"') {
+                int start = pos++;
+                while (pos < end && document[pos] != '"') {
+                    pos = document[pos] == '\\' ? checkEscape(pos + 1, end) : pos + 1;
+                }
+                if (pos >= end) {
+                    throw new ParserException("Unterminated string", start);
+                }
+                add(STRING, start, pos++);
+            } else {
+                int start = pos;
+                while (pos < end && !Utf8TokenSource.isDelimiter(document[pos])) {
+                    pos++;
+                }
+                add(LITERAL, start, pos);
+                checkLiteral(start, pos);
+            }
+        }
+        if (depth > 0) {
+            throw new ParserException("Unexpected end of document", pos);
+        }
+        if (size == 0) {
+            throw new ParserException("Unexpected end of document", pos);
+        }
+    }
+
+    /**
+     * the bytes of a literal as chars, literals are ASCII.
+     */
+    private final class Literal implements CharSequence {
+        private int start;
+        private int end;
+
+        void set(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        boolean hasFraction() {
+            for (int t = start; t < end; t++) {
+                if (document[t] == '.' || document[t] == 'e' || document[t] == 'E') {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (document[start + index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return toString().subSequence(from, to);
+        }
+
+        @Override
+        public String toString() {
+            return new String(document, start, end - start, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import java.io.IOException;
+
+import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.JsonTokenType;
+
+/**
+ * pull-style access to the tokens of a Json document.
+ * Tokens are produced one at a time, only the current token is kept.
+ */
+public interface JsonTokenSource {
+
+    /**
+     * advances to the next token.
+     * @return the type of the next token or null when the input is exhausted.
+     * @throws IOException when reading fails.
+     */
+    JsonTokenType next() throws IOException;
+
+    /**
+     * @return the type of the current token or null before the first and after the last token.
+     */
+    JsonTokenType getType();
+
+    /**
+     * decodes the value of the current token. Values are only decoded on request.
+     * @return the value of the current NAME or VALUE token, null for structural tokens.
+     */
+    Object getValue();
+
+    /**
+     * returns the text of the current NAME or VALUE token without decoding it into a value.
+     * The returned sequence is reused and only valid until the next call to next().
+     * @return the (unescaped) text of the current token, empty for structural tokens.
+     */
+    CharSequence getText();
+
+    /**
+     * @return the position in the input just after the current token.
+     */
+    long getPosition();
+
+    /**
+     * skips the children of the current OBJECT_START or ARRAY_START token by balancing brackets,
+     * without producing tokens for them. The matching end token becomes the current token.
+     * @throws IOException when reading fails.
+     */
+    void skipChildren() throws IOException;
+
+    /**
+     * skips the value of the current NAME token by balancing brackets, without producing tokens for it.
+     * The skipped value becomes the current VALUE token, its value is null.
+     * @throws IOException when reading fails.
+     */
+    void skipValue() throws IOException;
+
+}
@@ -16,14 +16,16 @@
 package nl.ctrlaltdev.json.transform.parse;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
-import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
 
-
-
-
+/**
+ * splits Json data into name, value and structural tokens.
+ */
 public class JsonTokenizer {
 
     public static enum JsonTokenType {
@@ -68,133 +70,227 @@ public class JsonTokenizer {
         }
     }
 
+    /**
+     * how numbers are represented in the parsed document.
+     */
+    public static enum NumberMode {
+        /**
+         * Integer, Long for more than 10 characters, Double for fractions and exponents.
+         */
+        DEFAULT,
+        /**
+         * JsonNumber, which keeps the original text and converts on demand, exact values are available as BigDecimal/BigInteger.
+         */
+        LAZY
+    }
+
     public static class ParserException extends RuntimeException {
-        public ParserException(int pos) {
+        public ParserException(long pos) {
             this("Invalid token", pos);
         }
 
-        public ParserException(String msg, int pos) {
+        public ParserException(String msg, long pos) {
             super(msg + " at " + String.valueOf(pos));
         }
     }
 
+    /**
+     * default number of entries in the property name cache of a token source.
+     */
+    public static final int DEFAULT_NAME_CACHE_SIZE = 1024;
+
+    private final int nameCacheSize;
+    private final NumberMode numberMode;
+    private final boolean customNumbers = overridesParseNumber(getClass());
+
+    public JsonTokenizer() {
+        this(DEFAULT_NAME_CACHE_SIZE);
+    }
+
+    /**
+     * @param nameCacheSize the number of entries in the cache that lets repeated property names
+     * share one String instance, 0 disables the cache.
+     */
+    public JsonTokenizer(int nameCacheSize) {
+        this(nameCacheSize, NumberMode.DEFAULT);
+    }
+
+    public JsonTokenizer(NumberMode numberMode) {
+        this(DEFAULT_NAME_CACHE_SIZE, numberMode);
+    }
+
+    /**
+     * @param nameCacheSize the number of entries in the name cache, 0 disables the cache.
+     * @param numberMode how numbers are represented.
+     */
+    public JsonTokenizer(int nameCacheSize, NumberMode numberMode) {
+        this.nameCacheSize = nameCacheSize;
+        this.numberMode = numberMode;
+    }
+
     public List<JsonToken> tokenize(String document) {
         try {
-            return tokenize(new StringReader(document));
+            return drain(tokens(document));
         } catch (IOException ex) {
             throw new RuntimeException(ex);
         }
     }
 
     public List<JsonToken> tokenize(Reader document) throws IOException {
-        List<JsonTokenType> stack = new ArrayList<JsonTokenizer.JsonTokenType>();
+        return drain(tokens(document));
+    }
+
+    private List<JsonToken> drain(JsonTokenSource source) throws IOException {
         List<JsonToken> tokens = new ArrayList<JsonToken>();
-        StringBuilder current = new StringBuilder();
-        StringBuilder escape = new StringBuilder();
-        boolean inQuote = false;
-        boolean inEscape = false;
-        boolean wasQuoted = false;
-        boolean expectName = false;
-        int read = -1;
-        int t = 0;
-        while ((read = document.read()) != -1) {
-            t++;
-            char c = (char)read;
-            if (inQuote) {
-                if (inEscape) {
-                    escape.append(c);
-                    inEscape = handleEscape(escape, current, t);
-                } else if (c == '\\') {
-                    inEscape = true;
-                    escape.delete(0, escape.length());
-                } else if (c == '"') {
-                    inQuote = false;
-                    wasQuoted = true;
-                } else {
-                    current.append(c);
-                }
-            } else if (c == '"') {
-                inQuote = true;
-            } else if (c == '[') {
-                wasQuoted = endToken(tokens, current, wasQuoted, expectName, t);
-                expectName = begin(tokens, stack, JsonTokenType.ARRAY_START);
-            } else if (c == ']') {
-                wasQuoted = endToken(tokens, current, wasQuoted, expectName, t);
-                expectName = end(tokens, stack, JsonTokenType.ARRAY_END, t);
-            } else if (c == '{') {
-                wasQuoted = endToken(tokens, current, wasQuoted, expectName, t);
-                expectName = begin(tokens, stack, JsonTokenType.OBJECT_START);
-            } else if (c == '}') {
-                wasQuoted = endToken(tokens, current, wasQuoted, expectName, t);
-                expectName = end(tokens, stack, JsonTokenType.OBJECT_END, t);
-            } else if (c == ',') {
-                wasQuoted = endToken(tokens, current, wasQuoted, expectName, t);
-                expectName = expectName(stack);
-            } else if (c == ':') {
-                wasQuoted = endToken(tokens, current, wasQuoted, expectName, t);
-                expectName = false;
-            } else if (!isSkip(c)) {
-                current.append(c);
-            }
+        JsonTokenType type;
+        while ((type = source.next()) != null) {
+            tokens.add(new JsonToken(type, source.getValue()));
         }
-        endToken(tokens, current, wasQuoted, expectName, t);
         return tokens;
     }
 
-    private boolean begin(List<JsonToken> tokens, List<JsonTokenType> stack, JsonTokenType type) {
-        tokens.add(new JsonToken(type));
-        stack.add(type);
-        return type == JsonTokenType.OBJECT_START;
+    /**
+     * @param document the document.
+     * @return a token source that tokenizes the document on demand.
+     */
+    public JsonTokenSource tokens(Reader document) {
+        return new CharTokenSource(this, document, null);
+    }
+
+    /**
+     * @param document the document.
+     * @return a token source that scans the characters of the document on demand.
+     */
+    public JsonTokenSource tokens(String document) {
+        return new CharTokenSource(this, null, document);
+    }
+
+    /**
+     * @param document the UTF-8 encoded document.
+     * @return a token source that scans the bytes of the document on demand.
+     */
+    public JsonTokenSource tokens(byte[] document) {
+        return tokens(document, 0, document.length);
     }
 
-    private boolean end(List<JsonToken> tokens, List<JsonTokenType> stack, JsonTokenType type, int pos) {
-        tokens.add(new JsonToken(type));
-        JsonTokenType top = stack.remove(stack.size() - 1);
-        if (!top.matches(type)) {
-            throw new ParserException("Expected " + top + " token ", pos);
+    /**
+     * @param document the UTF-8 encoded document.
+     * @param off the offset of the document in the array.
+     * @param len the length of the document.
+     * @return a token source that scans the bytes of the document on demand.
+     */
+    public JsonTokenSource tokens(byte[] document, int off, int len) {
+        return new Utf8TokenSource(this, document, off, len);
+    }
+
+    /**
+     * @param document the UTF-8 encoded document, from its position to its limit.
+     * The position of the buffer is not changed.
+     * @return a token source that scans the bytes of the document on demand.
+     */
+    public JsonTokenSource tokens(ByteBuffer document) {
+        if (document.hasArray()) {
+            return tokens(document.array(), document.arrayOffset() + document.position(), document.remaining());
         }
-        return expectName(stack);
+        return new Utf8TokenSource(this, document);
     }
 
-    private boolean expectName(List<JsonTokenType> stack) {
-        if (!stack.isEmpty()) {
-            return stack.get(stack.size() - 1) == JsonTokenType.OBJECT_START;
-        } else {
-            return false;
+    /**
+     * @param document the UTF-8 encoded document.
+     * @return a token source that reads and scans the bytes of the document on demand.
+     */
+    public JsonTokenSource tokens(InputStream document) {
+        return new Utf8TokenSource(this, document);
+    }
+
+    /**
+     * maps the file into memory region by region, so files larger than 2GB can be scanned.
+     * The channel is not closed by the token source.
+     * @param document the channel of the UTF-8 encoded document.
+     * @return a token source that scans the mapped bytes of the document on demand.
+     * @throws IOException when the size of the channel cannot be determined.
+     */
+    public JsonTokenSource tokens(FileChannel document) throws IOException {
+        return new Utf8TokenSource(this, document, Utf8TokenSource.REGION_SIZE);
+    }
+
+    static boolean isDelimiter(char c) {
+        switch (c) {
+        case ',':
+        case ':':
+        case '[':
+        case ']':
+        case '{':
+        case '}':
+        case '"':
+            return true;
+        default:
+            return isSkip(c);
         }
     }
 
-    private boolean isSkip(char c) {
+    static boolean isSkip(char c) {
+        if (c > ' ') {
+            return Character.isWhitespace(c);
+        }
         return Character.isWhitespace(c) || c == '\n' || c == '\r' || c == '\t' || c == '\b' || c == '\f';
     }
 
-    private boolean endToken(List<JsonToken> tz, StringBuilder current, boolean quoted, boolean name, int pos) {
-        if (current.length() != 0) {
-            String value = current.toString();
-            if (quoted) {
-                tz.add(new JsonToken(name ? JsonTokenType.NAME : JsonTokenType.VALUE, value));
-            } else if (name) {
-                throw new ParserException("Expected a name, not a value", pos);
-            } else if ("true".equals(value)) {
-                tz.add(new JsonToken(JsonTokenType.VALUE, Boolean.TRUE));
-            } else if ("false".equals(value)) {
-                tz.add(new JsonToken(JsonTokenType.VALUE, Boolean.FALSE));
-            } else if ("null".equals(value)) {
-                tz.add(new JsonToken(JsonTokenType.VALUE, null));
-            } else {
-                try {
-                    tz.add(new JsonToken(JsonTokenType.VALUE, parseNumber(value)));
-                } catch (NumberFormatException ex) {
-                    throw new ParserException("Unknown value '" + value + "'", pos);
-                }
+    /**
+     * @param other another tokenizer.
+     * @return true if token sources of the other tokenizer produce the same tokens as those of this one.
+     */
+    boolean isCompatible(JsonTokenizer other) {
+        return this == other || (getClass() == JsonTokenizer.class && other.getClass() == JsonTokenizer.class
+                && nameCacheSize == other.nameCacheSize && numberMode == other.numberMode);
+    }
+
+    NameCache newNameCache() {
+        return nameCacheSize > 0 ? new NameCache(nameCacheSize) : null;
+    }
+
+    Object toValue(CharSequence value, long pos) {
+        if ("true".contentEquals(value)) {
+            return Boolean.TRUE;
+        } else if ("false".contentEquals(value)) {
+            return Boolean.FALSE;
+        } else if ("null".contentEquals(value)) {
+            return null;
+        } else {
+            try {
+                return parseNumber(value);
+            } catch (NumberFormatException ex) {
+                throw new ParserException("Unknown value '" + value + "'", pos);
             }
-            current.delete(0, current.length());
         }
-        return false;
+    }
+
+    /**
+     * converts the text of a number according to the number mode.
+     * Plain integers are converted without creating a String first, other numbers are handed to parseNumber(String).
+     * When a subclass overrides parseNumber(String) all numbers are handed to it, in the DEFAULT mode.
+     * @param value the text.
+     * @return the number.
+     */
+    protected Number parseNumber(CharSequence value) {
+        if (numberMode == NumberMode.LAZY) {
+            if (!isNumber(value)) {
+                throw new NumberFormatException(value.toString());
+            }
+            return new JsonNumber(value.toString());
+        }
+        if (!customNumbers && isPlainInteger(value)) {
+            long l = parseDigits(value);
+            if (l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE) {
+                return Integer.valueOf((int) l);
+            }
+            return Long.valueOf(l);
+        }
+        return parseNumber(value.toString());
     }
 
     protected Number parseNumber(String value) {
-        if (value.indexOf('.') > 0) {
+        if (value.indexOf('.') > 0 || value.indexOf('e') > 0 || value.indexOf('E') > 0) {
             return Double.parseDouble(value);
         } else if (value.length() > 10) {
             return Long.parseLong(value);
@@ -203,42 +299,97 @@ public class JsonTokenizer {
         }
     }
 
-    private boolean handleEscape(StringBuilder escape, StringBuilder sb, int pos) {
-        switch (escape.charAt(0)) {
-        case 'b':
-            sb.append("\b");
-            return false;
-        case 'f':
-            sb.append("\f");
-            return false;
-        case 'n':
-            sb.append("\n");
-            return false;
-        case 'r':
-            sb.append("\r");
+    /**
+     * @return true if the class or one of its superclasses below JsonTokenizer declares parseNumber(String).
+     */
+    private static boolean overridesParseNumber(Class<?> type) {
+        for (Class<?> c = type; c != JsonTokenizer.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod("parseNumber", String.class);
+                return true;
+            } catch (NoSuchMethodException ex) {
+                // not declared here, look further up
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param value the text.
+     * @return true if the text is an optionally negative sequence of at most 18 digits, which always fits in a long.
+     */
+    static boolean isPlainInteger(CharSequence value) {
+        int len = value.length();
+        int t = len > 0 && value.charAt(0) == '-' ? 1 : 0;
+        if (t == len || len - t > 18) {
             return false;
-        case 't':
-            sb.append("\t");
-            return true;
-        case 'u':
-            if (escape.length() == 5) {
-                int c = Integer.parseInt(escape.substring(1, 5), 16);
-                sb.append((char) c);
+        }
+        for (; t < len; t++) {
+            if (!isDigit(value.charAt(t))) {
                 return false;
             }
-            return true;
-        case '/':
-            sb.append("/");
-            return false;
-        case '\\':
-            sb.append("\\");
-            return false;
-        case '"':
-            sb.append("\"");
+        }
+        return true;
+    }
+
+    /**
+     * @param value the text, must be a plain integer.
+     * @return the value, computed with a digit loop.
+     */
+    static long parseDigits(CharSequence value) {
+        int len = value.length();
+        boolean negative = value.charAt(0) == '-';
+        long result = 0;
+        for (int t = negative ? 1 : 0; t < len; t++) {
+            result = result * 10 + (value.charAt(t) - '0');
+        }
+        return negative ? -result : result;
+    }
+
+    /**
+     * @param value the text.
+     * @return true if the text is a Json number.
+     */
+    static boolean isNumber(CharSequence value) {
+        int len = value.length();
+        int t = 0;
+        if (t < len && value.charAt(t) == '-') {
+            t++;
+        }
+        int digits = t;
+        while (t < len && isDigit(value.charAt(t))) {
+            t++;
+        }
+        if (t == digits) {
             return false;
-        default:
-            throw new ParserException(pos);
         }
+        if (t < len && value.charAt(t) == '.') {
+            digits = ++t;
+            while (t < len && isDigit(value.charAt(t))) {
+                t++;
+            }
+            if (t == digits) {
+                return false;
+            }
+        }
+        if (t < len && (value.charAt(t) == 'e' || value.charAt(t) == 'E')) {
+            t++;
+            if (t < len && (value.charAt(t) == '+' || value.charAt(t) == '-')) {
+                t++;
+            }
+            digits = t;
+            while (t < len && isDigit(value.charAt(t))) {
+                t++;
+            }
+            if (t == digits) {
+                return false;
+            }
+        }
+        return t == len;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
     }
 
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * bounded table of property names, so a name that occurs many times in a document
+ * resolves to one shared String. Lookups hash the raw token text and only allocate
+ * when the name is not in the table, colliding names simply replace each other.
+ */
+final class NameCache {
+
+    private final String[] names;
+    private final int mask;
+
+    /**
+     * @param size the number of entries, rounded up to a power of two.
+     */
+    NameCache(int size) {
+        int capacity = Integer.highestOneBit(Math.max(1, size - 1) * 2);
+        this.names = new String[capacity];
+        this.mask = capacity - 1;
+    }
+
+    String get(CharSequence text) {
+        int len = text.length();
+        int h = 0;
+        for (int t = 0; t < len; t++) {
+            h = 31 * h + text.charAt(t);
+        }
+        int slot = (h ^ (h >>> 16)) & mask;
+        String name = names[slot];
+        if (name != null && name.length() == len) {
+            int t = 0;
+            while (t < len && name.charAt(t) == text.charAt(t)) {
+                t++;
+            }
+            if (t == len) {
+                return name;
+            }
+        }
+        name = text.toString();
+        names[slot] = name;
+        return name;
+    }
+
+    /**
+     * @param bytes the bytes of the name, must be ASCII.
+     * @param off the offset.
+     * @param len the length.
+     * @return the name.
+     */
+    String get(byte[] bytes, int off, int len) {
+        int h = 0;
+        for (int t = off; t < off + len; t++) {
+            h = 31 * h + bytes[t];
+        }
+        int slot = (h ^ (h >>> 16)) & mask;
+        String name = names[slot];
+        if (name != null && name.length() == len) {
+            int t = 0;
+            while (t < len && name.charAt(t) == bytes[off + t]) {
+                t++;
+            }
+            if (t == len) {
+                return name;
+            }
+        }
+        name = new String(bytes, off, len, StandardCharsets.ISO_8859_1);
+        names[slot] = name;
+        return name;
+    }
+
+}
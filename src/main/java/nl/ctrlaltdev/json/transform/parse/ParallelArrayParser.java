@@ -0,0 +1,175 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.ParserException;
+
+/**
+ * parses a document that consists of one large array in parallel.
+ * A single quote and escape aware pass finds the top level element boundaries,
+ * ranges of elements are then parsed by fork/join tasks, each with its own token source,
+ * and the results are assembled in document order.
+ */
+final class ParallelArrayParser {
+
+    private static final int MIN_CHUNK = 64 * 1024;
+
+    private final JsonParser parser;
+    private final byte[] document;
+    private final int off;
+    private final int end;
+    private int[] bounds = new int[1024];
+    private int count;
+    private Object[] values;
+
+    ParallelArrayParser(JsonParser parser, byte[] document, int off, int len) {
+        this.parser = parser;
+        this.document = document;
+        this.off = off;
+        this.end = off + len;
+    }
+
+    Object parse(ForkJoinPool pool) throws IOException {
+        int start = skipWhitespace(off);
+        if (start == end || document[start] != '[') {
+            return parser.buildDocument(parser.getTokenizer().tokens(document, off, end - off));
+        }
+        int close = scan(start + 1);
+        if (skipWhitespace(close + 1) != end) {
+            throw new ParserException("Unexpected content after the array", skipWhitespace(close + 1));
+        }
+        List<Object> result = parser.getFactory().newArray();
+        if (count == 1 && skipWhitespace(bounds[0]) == close) {
+            return result;
+        }
+        values = new Object[count];
+        int threshold = Math.max(MIN_CHUNK, (end - off) / (pool.getParallelism() * 8));
+        try {
+            pool.invoke(new Chunk(0, count, threshold));
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        result.addAll(Arrays.asList(values));
+        return result;
+    }
+
+    /**
+     * records the start of every top level element.
+     * @param from the first byte after the opening bracket.
+     * @return the position of the closing bracket.
+     */
+    private int scan(int from) {
+        add(from);
+        int level = 0;
+        for (int i = from; i < end; i++) {
+            byte c = document[i];
+            if (c == '"') {
+                i = skipString(i + 1);
+            } else if (c == '[' || c == '{') {
+                level++;
+            } else if (c == ']' || c == '}') {
+                if (level == 0) {
+                    if (c != ']') {
+                        throw new ParserException("Unexpected }", i);
+                    }
+                    add(i + 1);
+                    count--;
+                    return i;
+                }
+                level--;
+            } else if (c == ',' && level == 0) {
+                add(i + 1);
+            }
+        }
+        throw new ParserException("Unexpected end of document", end);
+    }
+
+    private int skipString(int i) {
+        while (i < end) {
+            byte c = document[i];
+            if (c == '"') {
+                return i;
+            }
+            i += c == '\\' ? 2 : 1;
+        }
+        throw new ParserException("Unterminated string", end);
+    }
+
+    private int skipWhitespace(int i) {
+        while (i < end && Utf8TokenSource.isSpace(document[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    private void add(int bound) {
+        if (count == bounds.length) {
+            bounds = Arrays.copyOf(bounds, bounds.length * 2);
+        }
+        bounds[count++] = bound;
+    }
+
+    /**
+     * parses the elements from..to, splitting the range while it is larger than the threshold.
+     */
+    private final class Chunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        Chunk(int from, int to, int threshold) {
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1 && bounds[to] - bounds[from] > threshold) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Chunk(from, mid, threshold), new Chunk(mid, to, threshold));
+                return;
+            }
+            Utf8TokenSource tokens = new Utf8TokenSource(parser.getTokenizer(), document, 0, 0);
+            try {
+                for (int t = from; t < to; t++) {
+                    int start = bounds[t];
+                    int len = bounds[t + 1] - 1 - start;
+                    if (skipWhitespace(start) == start + len) {
+                        throw new ParserException("Expected a value", start + len);
+                    }
+                    tokens.reset(document, start, len, start);
+                    values[t] = parser.build(tokens);
+                    if (tokens.next() != null) {
+                        throw new ParserException("Unexpected content", tokens.getPosition());
+                    }
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.JsonTokenType;
+import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.ParserException;
+
+/**
+ * parses a file that consists of one large array in parallel, also when it is larger than 2GB.
+ * A single quote and escape aware pass reads the file through a small window and splits the
+ * top level elements into ranges of about the same size, counting the elements of every range.
+ * Every range is then mapped region by region and parsed by a fork/join task with its own
+ * token source, and the results are assembled in document order.
+ */
+final class ParallelFileParser {
+
+    private static final int WINDOW_SIZE = 64 * 1024;
+    private static final long MIN_CHUNK = 1024 * 1024;
+
+    private final JsonParser parser;
+    private final FileChannel channel;
+    private final long size;
+    private final int regionSize;
+    private final long minChunk;
+    private long[] bounds = new long[64];
+    private int[] counts = new int[64];
+    private int ranges;
+    private Object[] values;
+
+    ParallelFileParser(JsonParser parser, FileChannel channel) throws IOException {
+        this(parser, channel, Utf8TokenSource.REGION_SIZE, MIN_CHUNK);
+    }
+
+    ParallelFileParser(JsonParser parser, FileChannel channel, int regionSize, long minChunk) throws IOException {
+        this.parser = parser;
+        this.channel = channel;
+        this.size = channel.size();
+        this.regionSize = regionSize;
+        this.minChunk = minChunk;
+    }
+
+    Object parse(ForkJoinPool pool) throws IOException {
+        long threshold = Math.max(minChunk, size / (pool.getParallelism() * 8));
+        if (!scan(threshold)) {
+            return parser.buildDocument(new Utf8TokenSource(parser.getTokenizer(), channel, 0, size, regionSize));
+        }
+        List<Object> result = parser.getFactory().newArray();
+        if (ranges == 0) {
+            return result;
+        }
+        values = new Object[ranges];
+        try {
+            pool.invoke(new Chunk(0, ranges));
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        for (Object range : values) {
+            result.addAll((List<?>) range);
+        }
+        return result;
+    }
+
+    /**
+     * splits the elements of the array into ranges of at least the threshold,
+     * a range runs from its bound up to the comma or bracket before the next bound.
+     * @return false when the document is not an array.
+     */
+    private boolean scan(long threshold) throws IOException {
+        byte[] window = new byte[WINDOW_SIZE];
+        ByteBuffer wrapped = ByteBuffer.wrap(window);
+        long open = -1;
+        long close = -1;
+        long start = 0;
+        int elements = 0;
+        boolean content = false;
+        boolean string = false;
+        boolean escape = false;
+        int level = 0;
+        for (long base = 0; base < size;) {
+            wrapped.clear();
+            int n = channel.read(wrapped, base);
+            if (n < 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                byte c = window[i];
+                if (string) {
+                    if (escape) {
+                        escape = false;
+                    } else if (c == '\\') {
+                        escape = true;
+                    } else if (c == '"') {
+                        string = false;
+                    }
+                    continue;
+                }
+                if (Utf8TokenSource.isSpace(c)) {
+                    continue;
+                }
+                long p = base + i;
+                if (open < 0) {
+                    if (c != '[') {
+                        return false;
+                    }
+                    open = p;
+                    start = p + 1;
+                    continue;
+                }
+                if (close >= 0) {
+                    throw new ParserException("Unexpected content after the array", p);
+                }
+                if (c == '"') {
+                    string = true;
+                } else if (c == '[' || c == '{') {
+                    level++;
+                } else if (c == ']' || c == '}') {
+                    if (level == 0) {
+                        if (c != ']') {
+                            throw new ParserException("Unexpected }", p);
+                        }
+                        close = p;
+                        if (content) {
+                            add(start, elements + 1);
+                        }
+                        continue;
+                    }
+                    level--;
+                } else if (c == ',' && level == 0) {
+                    elements++;
+                    if (p - start >= threshold) {
+                        add(start, elements);
+                        start = p + 1;
+                        elements = 0;
+                    }
+                }
+                content = true;
+            }
+            base += n;
+        }
+        if (open < 0) {
+            return false;
+        }
+        if (close < 0) {
+            throw new ParserException(string ? "Unterminated string" : "Unexpected end of document", size);
+        }
+        add(close + 1, 0);
+        ranges--;
+        return true;
+    }
+
+    private void add(long bound, int count) {
+        if (ranges == bounds.length) {
+            bounds = Arrays.copyOf(bounds, ranges * 2);
+            counts = Arrays.copyOf(counts, ranges * 2);
+        }
+        bounds[ranges] = bound;
+        counts[ranges++] = count;
+    }
+
+    /**
+     * parses the ranges from..to, one range per task.
+     */
+    private final class Chunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        Chunk(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Chunk(from, mid), new Chunk(mid, to));
+                return;
+            }
+            Utf8TokenSource tokens = new Utf8TokenSource(parser.getTokenizer(), channel, bounds[from], bounds[from + 1] - 1, regionSize);
+            try {
+                List<Object> range = new ArrayList<Object>(counts[from]);
+                for (int t = 0; t < counts[from]; t++) {
+                    JsonTokenType type = tokens.next();
+                    if (type == null) {
+                        throw new ParserException("Expected a value", tokens.getPosition());
+                    }
+                    range.add(parser.build(tokens, type));
+                }
+                if (tokens.next() != null) {
+                    throw new ParserException("Unexpected content", tokens.getPosition());
+                }
+                values[from] = range;
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+}
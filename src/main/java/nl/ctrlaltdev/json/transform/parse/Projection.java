@@ -0,0 +1,251 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import nl.ctrlaltdev.json.transform.path.Path;
+import nl.ctrlaltdev.json.transform.select.Select;
+import nl.ctrlaltdev.json.transform.select.SelectBuilder;
+import nl.ctrlaltdev.json.transform.select.SelectorChain;
+import nl.ctrlaltdev.json.transform.select.jsonpath.BasicJsonPathSelector;
+import nl.ctrlaltdev.json.transform.select.jsonpath.SliceJsonPathSelector;
+import nl.ctrlaltdev.json.transform.select.selector.IndexSelector;
+import nl.ctrlaltdev.json.transform.select.selector.PropertySelector;
+import nl.ctrlaltdev.json.transform.select.selector.RootSelector;
+import nl.ctrlaltdev.json.transform.select.selector.Selector;
+import nl.ctrlaltdev.json.transform.select.selector.WildcardSelector;
+
+/**
+ * the parts of a document a parser should build, all other subtrees are skipped unparsed.
+ * A projection is a tree of property names, indexes and wildcards, compiled from Paths or Selects.
+ * Selects are followed from the root as long as their selectors name a property, an index or any child,
+ * from the first other selector onwards the whole subtree is kept. Selects that are not anchored
+ * at the root can match anywhere and keep the whole document.
+ */
+public final class Projection {
+
+    private static final Object ANY = new Object();
+
+    private final Map<Object, Projection> children = new HashMap<Object, Projection>();
+    private Projection any;
+    private boolean all;
+    private boolean passThrough;
+
+    public static Projection of(Path... paths) {
+        Projection result = new Projection();
+        for (Path path : paths) {
+            result.include(path);
+        }
+        return result;
+    }
+
+    public static Projection of(Select... selects) {
+        Projection result = new Projection();
+        for (Select select : selects) {
+            result.include(select);
+        }
+        return result;
+    }
+
+    /**
+     * compiles the projection of a template that is filled by the PathHandler and SelectHandler,
+     * from its path:, select: and single-select: values.
+     * @param template the template.
+     * @return the projection.
+     */
+    public static Projection fromTemplate(Map<String, Object> template) {
+        Projection result = new Projection();
+        result.includeTemplate(template);
+        return result;
+    }
+
+    public Projection include(Path path) {
+        List<Object> steps = new ArrayList<Object>();
+        for (Path p : path.getPath()) {
+            steps.add(p.getTop());
+        }
+        include(steps, 0);
+        return this;
+    }
+
+    public Projection include(String jsonPath) {
+        return include(SelectBuilder.fromJsonPath(jsonPath));
+    }
+
+    public Projection include(Select select) {
+        List<Object> steps = new ArrayList<Object>();
+        Selector[] selectors = select instanceof SelectorChain ? ((SelectorChain) select).getSelectors() : new Selector[0];
+        if (selectors.length > 0 && isRoot(selectors[0])) {
+            for (int t = 1; t < selectors.length; t++) {
+                Object step = toStep(selectors[t]);
+                if (step == null) {
+                    break;
+                }
+                steps.add(step);
+            }
+        }
+        include(steps, 0);
+        return this;
+    }
+
+    /**
+     * keeps the subtrees outside the projection as RawJson instead of leaving them out,
+     * so the document can be printed in full while only the projected branches are parsed.
+     * @return this projection.
+     */
+    public Projection passThrough() {
+        this.passThrough = true;
+        return this;
+    }
+
+    public boolean isPassThrough() {
+        return passThrough;
+    }
+
+    /**
+     * @return true if the whole subtree is part of the projection.
+     */
+    public boolean isAll() {
+        return all;
+    }
+
+    /**
+     * @param name the property name.
+     * @return the projection of the property or null if it is not part of the projection.
+     */
+    public Projection child(String name) {
+        return all ? this : find(name);
+    }
+
+    /**
+     * @param index the array index.
+     * @return the projection of the element or null if it is not part of the projection.
+     */
+    public Projection child(int index) {
+        return all ? this : find(Integer.valueOf(index));
+    }
+
+    private Projection find(Object key) {
+        Projection result = children.get(key);
+        return result != null ? result : any;
+    }
+
+    private void include(List<Object> steps, int from) {
+        if (all) {
+            return;
+        }
+        if (from == steps.size()) {
+            all = true;
+            children.clear();
+            any = null;
+            return;
+        }
+        Object step = steps.get(from);
+        if (step == ANY) {
+            if (any == null) {
+                any = new Projection();
+            }
+            any.include(steps, from + 1);
+            for (Projection child : children.values()) {
+                child.include(steps, from + 1);
+            }
+        } else {
+            Projection child = children.get(step);
+            if (child == null) {
+                child = any != null ? any.copy() : new Projection();
+                children.put(step, child);
+            }
+            child.include(steps, from + 1);
+        }
+    }
+
+    private Projection copy() {
+        Projection result = new Projection();
+        result.all = all;
+        result.any = any != null ? any.copy() : null;
+        for (Map.Entry<Object, Projection> entry : children.entrySet()) {
+            result.children.put(entry.getKey(), entry.getValue().copy());
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void includeTemplate(Object node) {
+        if (node instanceof Map) {
+            for (Object value : ((Map<String, Object>) node).values()) {
+                includeTemplate(value);
+            }
+        } else if (node instanceof List) {
+            for (Object value : (List<Object>) node) {
+                includeTemplate(value);
+            }
+        } else if (node instanceof String) {
+            String value = (String) node;
+            if (value.startsWith("path:")) {
+                include(Path.fromString(value.substring(5)));
+            } else if (value.startsWith("select:")) {
+                include(value.substring(7));
+            } else if (value.startsWith("single-select:")) {
+                include(value.substring(14));
+            }
+        }
+    }
+
+    private static boolean isRoot(Selector selector) {
+        if (selector instanceof BasicJsonPathSelector) {
+            switch (((BasicJsonPathSelector) selector).getNameType()) {
+            case ROOT_NODE:
+            case CURRENT_NODE:
+                return true;
+            default:
+                return false;
+            }
+        }
+        return selector instanceof RootSelector;
+    }
+
+    /**
+     * @param selector the selector.
+     * @return the property name, index or ANY the selector matches, or null if it needs the whole subtree.
+     */
+    private static Object toStep(Selector selector) {
+        if (selector instanceof PropertySelector) {
+            return ((PropertySelector) selector).getProperty();
+        } else if (selector instanceof IndexSelector) {
+            return Integer.valueOf(((IndexSelector) selector).getIndex());
+        } else if (selector instanceof WildcardSelector || selector instanceof SliceJsonPathSelector) {
+            return ANY;
+        } else if (selector instanceof BasicJsonPathSelector) {
+            BasicJsonPathSelector basic = (BasicJsonPathSelector) selector;
+            switch (basic.getNameType()) {
+            case PROPERTY:
+            case INDEX:
+                return basic.getArgument();
+            case ANY_INDEX:
+            case ANY_PROPERTY_OR_INDEX_NODE:
+                return ANY;
+            default:
+                return null;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * a subtree of a document that is kept as the text it was parsed from.
+ * Visitors, merges and transforms treat it as a value and carry it through unchanged,
+ * JsonPrinter copies the text verbatim. Paths and selectors that descend into it decode it once,
+ * from then on the decoded value takes its place, so changes to it are printed as well.
+ */
+public final class RawJson {
+
+    private final JsonParser parser;
+    private final byte[] bytes;
+    private final String text;
+    private boolean decoded;
+    private Object value;
+
+    /**
+     * @param parser the parser that decodes the text.
+     * @param bytes the UTF-8 encoded text.
+     */
+    public RawJson(JsonParser parser, byte[] bytes) {
+        this.parser = parser;
+        this.bytes = bytes;
+        this.text = null;
+    }
+
+    /**
+     * @param parser the parser that decodes the text.
+     * @param text the text.
+     */
+    public RawJson(JsonParser parser, String text) {
+        this.parser = parser;
+        this.bytes = null;
+        this.text = text;
+    }
+
+    /**
+     * @param node a node.
+     * @return the decoded value if the node is a RawJson, otherwise the node itself.
+     */
+    public static Object decode(Object node) {
+        return node instanceof RawJson ? ((RawJson) node).decode() : node;
+    }
+
+    /**
+     * @param node a node.
+     * @return the decoded value if the node is a RawJson that has been decoded, otherwise the node itself.
+     */
+    public static Object resolve(Object node) {
+        if (node instanceof RawJson && ((RawJson) node).isDecoded()) {
+            return ((RawJson) node).value;
+        }
+        return node;
+    }
+
+    /**
+     * @return the Map/List/Value structure of the text, decoded on the first call.
+     */
+    public Object decode() {
+        if (!decoded) {
+            value = bytes != null ? parser.parse(bytes) : parser.parse(text);
+            decoded = true;
+        }
+        return value;
+    }
+
+    public boolean isDecoded() {
+        return decoded;
+    }
+
+    /**
+     * writes the text as it was parsed.
+     * @param writer the destination.
+     * @throws IOException when writing fails.
+     */
+    public void writeTo(Writer writer) throws IOException {
+        writer.write(getText());
+    }
+
+    /**
+     * writes the text as it was parsed, UTF-8 encoded.
+     * @param out the destination.
+     * @throws IOException when writing fails.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes != null ? bytes : text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the text as it was parsed.
+     */
+    public String getText() {
+        return text != null ? text : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        Object other = obj instanceof RawJson ? ((RawJson) obj).decode() : obj;
+        Object mine = decode();
+        return mine == null ? other == null : mine.equals(other);
+    }
+
+    @Override
+    public int hashCode() {
+        Object mine = decode();
+        return mine == null ? 0 : mine.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return decoded ? String.valueOf(value) : getText();
+    }
+
+}
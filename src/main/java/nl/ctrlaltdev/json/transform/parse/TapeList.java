@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * read-only view on an array of a JsonTape until it is modified,
+ * elements are decoded when they are read and kept, so repeated reads return the same instance.
+ * The tape indexes of the elements are collected on first access, so reading an element is constant time.
+ */
+final class TapeList extends AbstractList<Object> implements RandomAccess {
+
+    private static final Object UNDECODED = new Object();
+
+    private final JsonTape tape;
+    private final int index;
+    private int[] elements;
+    private Object[] values;
+    private List<Object> delegate;
+
+    TapeList(JsonTape tape, int index) {
+        this.tape = tape;
+        this.index = index;
+    }
+
+    @Override
+    public Object get(int idx) {
+        if (delegate != null) {
+            return delegate.get(idx);
+        }
+        int[] elements = elements();
+        if (idx < 0 || idx >= elements.length) {
+            throw new IndexOutOfBoundsException(String.valueOf(idx));
+        }
+        Object result = values[idx];
+        if (result == UNDECODED) {
+            result = tape.value(elements[idx]);
+            values[idx] = result;
+        }
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return delegate != null ? delegate.size() : elements().length;
+    }
+
+    @Override
+    public Object set(int idx, Object element) {
+        return materialize().set(idx, element);
+    }
+
+    @Override
+    public void add(int idx, Object element) {
+        materialize().add(idx, element);
+        modCount++;
+    }
+
+    @Override
+    public Object remove(int idx) {
+        Object result = materialize().remove(idx);
+        modCount++;
+        return result;
+    }
+
+    private int[] elements() {
+        if (elements == null) {
+            int[] result = tape.children(index, 1);
+            values = new Object[result.length];
+            Arrays.fill(values, UNDECODED);
+            elements = result;
+        }
+        return elements;
+    }
+
+    private List<Object> materialize() {
+        if (delegate == null) {
+            List<Object> result = tape.factory().newArray();
+            for (int t = 0; t < size(); t++) {
+                result.add(get(t));
+            }
+            delegate = result;
+            elements = null;
+            values = null;
+        }
+        return delegate;
+    }
+
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * read-only view on an object of a JsonTape until it is modified, also through its entries and iterators.
+ * The names are located on first access, names and values are decoded when they are read
+ * and decoded values are kept, so repeated reads return the same instance.
+ * Like the parser, the last of duplicate names wins.
+ */
+final class TapeMap extends AbstractMap<String, Object> {
+
+    private static final Object UNDECODED = new Object();
+
+    private final JsonTape tape;
+    private final int index;
+    private int[] names;
+    private Object[] values;
+    private Map<String, Object> delegate;
+
+    TapeMap(JsonTape tape, int index) {
+        this.tape = tape;
+        this.index = index;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (delegate != null) {
+            return delegate.get(key);
+        }
+        int found = find(key);
+        return found < 0 ? null : value(found);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (delegate != null) {
+            return delegate.containsKey(key);
+        }
+        return find(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return delegate != null ? delegate.size() : names().length;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        return materialize().put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        return materialize().remove(key);
+    }
+
+    @Override
+    public void clear() {
+        materialize().clear();
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        if (delegate != null) {
+            return delegate.entrySet();
+        }
+        return new AbstractSet<Map.Entry<String, Object>>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                return delegate != null ? delegate.entrySet().iterator() : new Entries();
+            }
+
+            @Override
+            public int size() {
+                return TapeMap.this.size();
+            }
+        };
+    }
+
+    private int[] names() {
+        if (names == null) {
+            names = tape.names(index);
+        }
+        return names;
+    }
+
+    private int find(Object key) {
+        if (key instanceof String) {
+            int[] names = names();
+            for (int t = 0; t < names.length; t++) {
+                if (tape.nameEquals(names[t], (String) key)) {
+                    return t;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private Object value(int member) {
+        if (values == null) {
+            values = new Object[names.length];
+            Arrays.fill(values, UNDECODED);
+        }
+        Object result = values[member];
+        if (result == UNDECODED) {
+            result = tape.value(names[member] + 1);
+            values[member] = result;
+        }
+        return result;
+    }
+
+    private Map<String, Object> materialize() {
+        if (delegate == null) {
+            Map<String, Object> result = tape.factory().newObject();
+            for (Iterator<Map.Entry<String, Object>> it = new Entries(); it.hasNext();) {
+                Map.Entry<String, Object> entry = it.next();
+                result.put(entry.getKey(), entry.getValue());
+            }
+            delegate = result;
+            names = null;
+            values = null;
+        }
+        return delegate;
+    }
+
+    /**
+     * iterates over the names located on the tape, reading through the delegate once the map materialized,
+     * which happens on the first setValue or remove.
+     */
+    private final class Entries implements Iterator<Map.Entry<String, Object>> {
+
+        private final int[] members = names();
+        private int member;
+        private String last;
+
+        @Override
+        public boolean hasNext() {
+            return member < members.length;
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = tape.string(members[member]);
+            return new Entry(last, member++);
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            materialize().remove(last);
+            last = null;
+        }
+    }
+
+    private final class Entry implements Map.Entry<String, Object> {
+        private final String key;
+        private final int member;
+
+        private Entry(String key, int member) {
+            this.key = key;
+            this.member = member;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public Object getValue() {
+            return delegate != null ? delegate.get(key) : value(member);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            return materialize().put(key, value);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) obj;
+            Object value = getValue();
+            return key.equals(e.getKey()) && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            Object value = getValue();
+            return key.hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+
+}
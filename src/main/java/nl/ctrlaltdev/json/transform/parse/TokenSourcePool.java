@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * keeps one token source per thread for each kind of input, so parsing many small documents
+ * does not allocate windows, buffers and name caches for every document.
+ * A source is taken out of the pool while it is in use, nested parses on the same thread get a new one.
+ * Sources whose buffers grew beyond MAX_RETAINED while scanning a large document are dropped
+ * instead of being returned, so one huge document does not pin its buffers to the thread.
+ */
+final class TokenSourcePool {
+
+    /**
+     * the maximum number of bytes of buffers a pooled source may hold.
+     */
+    static final int MAX_RETAINED = 256 * 1024;
+
+    private static final ThreadLocal<AbstractTokenSource[]> SOURCES = new ThreadLocal<AbstractTokenSource[]>() {
+        @Override
+        protected AbstractTokenSource[] initialValue() {
+            return new AbstractTokenSource[3];
+        }
+    };
+
+    private static final int BYTES = 0;
+    private static final int STREAM = 1;
+    private static final int CHARS = 2;
+
+    private TokenSourcePool() {
+    }
+
+    static Utf8TokenSource bytes(JsonTokenizer tokenizer, byte[] document, int off, int len) {
+        Utf8TokenSource source = (Utf8TokenSource) take(tokenizer, BYTES);
+        if (source == null) {
+            return new Utf8TokenSource(tokenizer, document, off, len);
+        }
+        source.reset(document, off, len, 0);
+        return source;
+    }
+
+    static Utf8TokenSource stream(JsonTokenizer tokenizer, InputStream in) {
+        Utf8TokenSource source = (Utf8TokenSource) take(tokenizer, STREAM);
+        if (source == null) {
+            return new Utf8TokenSource(tokenizer, in);
+        }
+        source.reset(in);
+        return source;
+    }
+
+    static CharTokenSource chars(JsonTokenizer tokenizer, Reader reader, String string) {
+        CharTokenSource source = (CharTokenSource) take(tokenizer, CHARS);
+        if (source == null) {
+            source = new CharTokenSource(tokenizer, null, null);
+        }
+        source.reset(reader, string);
+        return source;
+    }
+
+    /**
+     * returns a source taken with bytes, stream or chars.
+     * @param source the source, no longer to be used by the caller.
+     */
+    static void release(AbstractTokenSource source) {
+        int kind = kind(source);
+        source.detach();
+        if (source.footprint() <= MAX_RETAINED) {
+            SOURCES.get()[kind] = source;
+        }
+    }
+
+    private static AbstractTokenSource take(JsonTokenizer tokenizer, int kind) {
+        AbstractTokenSource[] sources = SOURCES.get();
+        AbstractTokenSource source = sources[kind];
+        if (source == null || !source.getTokenizer().isCompatible(tokenizer)) {
+            return null;
+        }
+        sources[kind] = null;
+        return source;
+    }
+
+    private static int kind(AbstractTokenSource source) {
+        if (source instanceof CharTokenSource) {
+            return CHARS;
+        }
+        return ((Utf8TokenSource) source).isStream() ? STREAM : BYTES;
+    }
+
+}
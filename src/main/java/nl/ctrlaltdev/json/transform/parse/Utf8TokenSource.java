@@ -0,0 +1,722 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.JsonTokenType;
+import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.ParserException;
+
+/**
+ * scans UTF-8 encoded input byte by byte, without decoding it into characters first.
+ * Tokens that fit in the window are referenced in place, pure ASCII strings
+ * without escapes are turned into a String without UTF-8 decoding.
+ * Files are mapped into memory one region at a time, earlier regions are released
+ * by the garbage collector once they are no longer referenced.
+ */
+final class Utf8TokenSource extends AbstractTokenSource {
+
+    /**
+     * size of the window the bytes are scanned in when the input is not a heap array.
+     */
+    private static final int BUFFER_SIZE = 32768;
+
+    /**
+     * size of the regions a file is mapped in.
+     */
+    static final int REGION_SIZE = 1 << 28;
+
+    /**
+     * the ASCII whitespace, the same set the char source skips.
+     */
+    private static final boolean[] SPACES = new boolean[128];
+
+    static {
+        for (int c = 0; c < SPACES.length; c++) {
+            SPACES[c] = JsonTokenizer.isSkip((char) c);
+        }
+    }
+
+    private InputStream in;
+    private final FileChannel channel;
+    private final int regionSize;
+    private final long size;
+    private long mapped;
+    private ByteBuffer buffer;
+    private final StringBuilder chars = new StringBuilder();
+    private byte[] buf;
+    private ByteBuffer words;
+    private int pos;
+    private int limit;
+    private long offset;
+    private byte[] copy = new byte[64];
+    private byte[] raw = new byte[0];
+    private int rawLength;
+    private int mark = -1;
+    private boolean capturing;
+    private byte[] text;
+    private int textStart;
+    private int textLength;
+    private boolean ascii;
+    private boolean charsDecoded;
+
+    Utf8TokenSource(JsonTokenizer tokenizer, byte[] document, int off, int len) {
+        this(tokenizer, null, null, 0, 0);
+        this.buf = document;
+        this.words = ByteWords.wrap(document);
+        this.pos = off;
+        this.limit = off + len;
+        this.offset = -off;
+    }
+
+    Utf8TokenSource(JsonTokenizer tokenizer, InputStream in) {
+        this(tokenizer, in, null, 0, 0);
+        this.buf = new byte[BUFFER_SIZE];
+        this.words = ByteWords.wrap(buf);
+    }
+
+    Utf8TokenSource(JsonTokenizer tokenizer, ByteBuffer buffer) {
+        this(tokenizer, null, null, 0, 0);
+        this.buffer = buffer.duplicate();
+        this.buf = new byte[Math.max(1, Math.min(buffer.remaining(), BUFFER_SIZE))];
+        this.words = ByteWords.wrap(buf);
+    }
+
+    Utf8TokenSource(JsonTokenizer tokenizer, FileChannel channel, int regionSize) throws IOException {
+        this(tokenizer, null, channel, regionSize, channel.size());
+        this.mapped = channel.position();
+        this.buf = new byte[(int) Math.max(1, Math.min(size - mapped, BUFFER_SIZE))];
+        this.words = ByteWords.wrap(buf);
+    }
+
+    /**
+     * scans the bytes from..to of a file, mapping them region by region.
+     * Positions are reported from the start of the file, the position of the channel is not used.
+     */
+    Utf8TokenSource(JsonTokenizer tokenizer, FileChannel channel, long from, long to, int regionSize) {
+        this(tokenizer, null, channel, regionSize, to);
+        this.mapped = from;
+        this.offset = from;
+        this.buf = new byte[(int) Math.max(1, Math.min(to - from, BUFFER_SIZE))];
+        this.words = ByteWords.wrap(buf);
+    }
+
+    /**
+     * starts scanning a new document, keeping the buffers and the name cache.
+     * Only to be used on sources created for a byte array.
+     * @param document the UTF-8 encoded document.
+     * @param off the offset of the document in the array.
+     * @param len the length of the document.
+     * @param position the position reported for the first byte of the document.
+     */
+    void reset(byte[] document, int off, int len, long position) {
+        resetCapture();
+        if (buf != document) {
+            this.buf = document;
+            this.words = ByteWords.wrap(document);
+        }
+        this.pos = off;
+        this.limit = off + len;
+        this.offset = position - off;
+    }
+
+    /**
+     * starts reading a new stream, keeping the window, the buffers and the name cache.
+     * Only to be used on sources created for a stream.
+     * @param in the UTF-8 encoded input.
+     */
+    void reset(InputStream in) {
+        resetCapture();
+        this.in = in;
+        this.pos = 0;
+        this.limit = 0;
+        this.offset = 0;
+    }
+
+    /**
+     * @return true if the source reads an input stream.
+     */
+    boolean isStream() {
+        return in != null;
+    }
+
+    private void resetCapture() {
+        reset();
+        mark = -1;
+        capturing = false;
+        rawLength = 0;
+    }
+
+    @Override
+    protected void detach() {
+        if (in != null) {
+            in = null;
+        } else {
+            buf = null;
+            words = null;
+        }
+        pos = 0;
+        limit = 0;
+        text = null;
+    }
+
+    @Override
+    protected int footprint() {
+        return (in != null ? buf.length : 0) + copy.length + raw.length + chars.capacity() * 2;
+    }
+
+    private Utf8TokenSource(JsonTokenizer tokenizer, InputStream in, FileChannel channel, int regionSize, long size) {
+        super(tokenizer);
+        this.in = in;
+        this.channel = channel;
+        this.regionSize = regionSize;
+        this.size = size;
+    }
+
+    @Override
+    protected JsonTokenType advance() throws IOException {
+        textLength = 0;
+        ascii = true;
+        charsDecoded = false;
+        while (pos < limit || fill()) {
+            byte c = buf[pos++];
+            switch (c) {
+            case '"':
+                readString();
+                return quoted();
+            case '[':
+                return begin(JsonTokenType.ARRAY_START);
+            case ']':
+                return end(JsonTokenType.ARRAY_END);
+            case '{':
+                return begin(JsonTokenType.OBJECT_START);
+            case '}':
+                return end(JsonTokenType.OBJECT_END);
+            case ',':
+                separator();
+                break;
+            case ':':
+                colon();
+                break;
+            case ' ':
+            case '\n':
+                skipSpaces();
+                break;
+            case '\r':
+            case '\t':
+            case '\b':
+            case '\f':
+                break;
+            default:
+                if (c < 0) {
+                    skipUnicodeSpace(c);
+                    break;
+                }
+                if (SPACES[c]) {
+                    break;
+                }
+                pos--;
+                JsonTokenType type = unquoted();
+                readLiteral();
+                return type;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    protected char skipStructure() throws IOException {
+        int level = 1;
+        while (pos < limit || fill()) {
+            byte c = buf[pos++];
+            if (c == '"') {
+                skipString();
+            } else if (c == '[' || c == '{') {
+                level++;
+            } else if ((c == ']' || c == '}') && --level == 0) {
+                return (char) c;
+            }
+        }
+        throw new ParserException("Unexpected end of document", getPosition());
+    }
+
+    @Override
+    protected void skipNextValue() throws IOException {
+        while (true) {
+            byte c = read();
+            switch (c) {
+            case '"':
+                mark = pos - 1;
+                skipString();
+                return;
+            case '[':
+            case '{':
+                mark = pos - 1;
+                skipStructure();
+                return;
+            case ':':
+            case ' ':
+            case '\n':
+            case '\r':
+            case '\t':
+            case '\b':
+            case '\f':
+                break;
+            case ',':
+            case ']':
+            case '}':
+                throw new ParserException("Expected a value", getPosition());
+            default:
+                if (c < 0) {
+                    skipUnicodeSpace(c);
+                    break;
+                }
+                if (SPACES[c]) {
+                    break;
+                }
+                mark = pos - 1;
+                while ((pos < limit || fill()) && !endsLiteral(buf[pos])) {
+                    pos++;
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    protected RawJson captureNextValue(JsonParser parser) throws IOException {
+        capturing = true;
+        skipNextValue();
+        return captured(parser);
+    }
+
+    @Override
+    protected RawJson captureStructure(JsonParser parser) throws IOException {
+        capturing = true;
+        mark = pos - 1;
+        skipStructure();
+        return captured(parser);
+    }
+
+    private RawJson captured(JsonParser parser) {
+        RawJson result;
+        if (rawLength == 0) {
+            result = new RawJson(parser, Arrays.copyOfRange(buf, mark, pos));
+        } else {
+            saveRaw(pos);
+            result = new RawJson(parser, Arrays.copyOf(raw, rawLength));
+        }
+        capturing = false;
+        mark = -1;
+        rawLength = 0;
+        return result;
+    }
+
+    /**
+     * appends the captured part of the window to the raw buffer.
+     * @param end the end of the captured part.
+     */
+    private void saveRaw(int end) {
+        int len = end - mark;
+        if (rawLength + len > raw.length) {
+            raw = Arrays.copyOf(raw, Math.max(raw.length * 2, rawLength + len));
+        }
+        System.arraycopy(buf, mark, raw, rawLength, len);
+        rawLength += len;
+        mark = 0;
+    }
+
+    private void skipString() throws IOException {
+        while (true) {
+            scanWords();
+            if (pos < limit) {
+                byte c = buf[pos++];
+                if (c == '"') {
+                    return;
+                } else if (c == '\\') {
+                    read();
+                }
+            } else if (!fill()) {
+                throw new ParserException("Unterminated string", getPosition());
+            }
+        }
+    }
+
+    @Override
+    protected String decodeString() {
+        if (ascii) {
+            return new String(text, textStart, textLength, StandardCharsets.ISO_8859_1);
+        }
+        return getText().toString();
+    }
+
+    @Override
+    protected String decodeName(NameCache names) {
+        if (ascii) {
+            return names.get(text, textStart, textLength);
+        }
+        return names.get(getText());
+    }
+
+    @Override
+    public CharSequence getText() {
+        if (!charsDecoded) {
+            chars.setLength(0);
+            decode(text, textStart, textLength, chars);
+            charsDecoded = true;
+        }
+        return chars;
+    }
+
+    @Override
+    public long getPosition() {
+        return offset + pos;
+    }
+
+    /**
+     * refills the window.
+     * @return false at the end of the input.
+     * @throws IOException when reading fails.
+     */
+    private boolean fill() throws IOException {
+        if (!isWindowed()) {
+            return false;
+        }
+        if (capturing && mark >= 0) {
+            saveRaw(limit);
+        }
+        offset += limit;
+        pos = 0;
+        limit = 0;
+        if (in != null) {
+            int count = in.read(buf, 0, buf.length);
+            while (count == 0) {
+                count = in.read(buf, 0, buf.length);
+            }
+            if (count > 0) {
+                limit = count;
+            }
+        } else {
+            if ((buffer == null || !buffer.hasRemaining()) && channel != null && mapped < size) {
+                long length = Math.min(regionSize, size - mapped);
+                buffer = channel.map(MapMode.READ_ONLY, mapped, length);
+                mapped += length;
+            }
+            if (buffer != null && buffer.hasRemaining()) {
+                limit = Math.min(buf.length, buffer.remaining());
+                buffer.get(buf, 0, limit);
+            }
+        }
+        return limit > 0;
+    }
+
+    /**
+     * @return true if the input is scanned through the window, false if the input array is scanned in place.
+     */
+    private boolean isWindowed() {
+        return in != null || buffer != null || channel != null;
+    }
+
+    private byte read() throws IOException {
+        if (pos == limit && !fill()) {
+            throw new ParserException("Unexpected end of document", getPosition());
+        }
+        return buf[pos++];
+    }
+
+    private void readString() throws IOException {
+        int start = pos;
+        scanWords();
+        while (pos < limit) {
+            byte c = buf[pos];
+            if (c == '"') {
+                text = buf;
+                textStart = start;
+                textLength = pos - start;
+                pos++;
+                return;
+            } else if (c == '\\') {
+                break;
+            } else if (c < 0) {
+                ascii = false;
+            }
+            pos++;
+        }
+        readCopiedString(start);
+    }
+
+    /**
+     * moves to the first quote or backslash in the window, a vector or eight bytes at a time,
+     * or to the last few bytes of the window that are left to the byte loop.
+     */
+    private void scanWords() {
+        if (ByteVectors.AVAILABLE) {
+            int next = ByteVectors.skipToQuoteOrBackslash(buf, pos, limit);
+            if (next < 0) {
+                ascii = false;
+                next &= Integer.MAX_VALUE;
+            }
+            pos = next;
+        }
+        int last = limit - 8;
+        while (pos <= last) {
+            long word = words.getLong(pos);
+            long found = ByteWords.quoteOrBackslash(word);
+            if (found != 0) {
+                if (ByteWords.isNonAsciiBefore(word, found)) {
+                    ascii = false;
+                }
+                pos += ByteWords.first(found);
+                return;
+            }
+            if (ByteWords.isNonAscii(word)) {
+                ascii = false;
+            }
+            pos += 8;
+        }
+    }
+
+    /**
+     * skips a run of spaces, such as indentation, eight bytes at a time.
+     */
+    private void skipSpaces() {
+        int last = limit - 8;
+        while (pos <= last) {
+            long found = ByteWords.notSpace(words.getLong(pos));
+            if (found != 0) {
+                pos += ByteWords.first(found);
+                return;
+            }
+            pos += 8;
+        }
+    }
+
+    /**
+     * slow path for strings that contain escapes or cross the window.
+     * @param start the start of the string in the window.
+     * @throws IOException when reading fails.
+     */
+    private void readCopiedString(int start) throws IOException {
+        text = copy;
+        textStart = 0;
+        while (true) {
+            append(buf, start, pos - start);
+            if (pos == limit) {
+                if (!fill()) {
+                    throw new ParserException("Unterminated string", getPosition());
+                }
+            } else if (buf[pos++] == '"') {
+                return;
+            } else {
+                handleEscape();
+            }
+            start = pos;
+            scanWords();
+            while (pos < limit) {
+                byte c = buf[pos];
+                if (c == '"' || c == '\\') {
+                    break;
+                } else if (c < 0) {
+                    ascii = false;
+                }
+                pos++;
+            }
+        }
+    }
+
+    private void handleEscape() throws IOException {
+        byte c = read();
+        switch (c) {
+        case 'b':
+            append((byte) '\b');
+            break;
+        case 'f':
+            append((byte) '\f');
+            break;
+        case 'n':
+            append((byte) '\n');
+            break;
+        case 'r':
+            append((byte) '\r');
+            break;
+        case 't':
+            append((byte) '\t');
+            break;
+        case 'u':
+            int code = 0;
+            for (int i = 0; i < 4; i++) {
+                int digit = Character.digit(read(), 16);
+                if (digit < 0) {
+                    throw new ParserException(getPosition());
+                }
+                code = (code << 4) | digit;
+            }
+            appendChar(code);
+            break;
+        case '/':
+        case '\\':
+        case '"':
+            append(c);
+            break;
+        default:
+            throw new ParserException(getPosition());
+        }
+    }
+
+    private void readLiteral() throws IOException {
+        int start = pos;
+        while (pos < limit && !endsLiteral(buf[pos])) {
+            pos++;
+        }
+        if (pos < limit || !isWindowed()) {
+            text = buf;
+            textStart = start;
+            textLength = pos - start;
+            return;
+        }
+        text = copy;
+        textStart = 0;
+        while (true) {
+            append(buf, start, pos - start);
+            if (pos < limit || !fill()) {
+                return;
+            }
+            start = pos;
+            while (pos < limit && !endsLiteral(buf[pos])) {
+                pos++;
+            }
+        }
+    }
+
+    /**
+     * skips the rest of a multi byte whitespace character such as U+2028 or U+3000.
+     * Other non-ASCII characters can only appear in strings, so they are rejected.
+     * @param c the first byte of the character, already read.
+     */
+    private void skipUnicodeSpace(byte c) throws IOException {
+        long start = getPosition() - 1;
+        if ((c & 0xF0) == 0xE0) {
+            byte second = read();
+            byte third = read();
+            if ((second & 0xC0) == 0x80 && (third & 0xC0) == 0x80
+                    && JsonTokenizer.isSkip((char) ((c & 0x0F) << 12 | (second & 0x3F) << 6 | (third & 0x3F)))) {
+                return;
+            }
+        }
+        throw new ParserException(start);
+    }
+
+    /**
+     * @return true if the byte ends a literal, literals are ASCII so non-ASCII bytes end them too.
+     */
+    private static boolean endsLiteral(byte c) {
+        return c < 0 || isDelimiter(c);
+    }
+
+    /**
+     * @return true if the byte is whitespace.
+     */
+    static boolean isSpace(byte c) {
+        return c >= 0 && SPACES[c];
+    }
+
+    static boolean isDelimiter(byte c) {
+        switch (c) {
+        case ',':
+        case ':':
+        case '[':
+        case ']':
+        case '{':
+        case '}':
+        case '"':
+            return true;
+        default:
+            return isSpace(c);
+        }
+    }
+
+    /**
+     * encodes a single UTF-16 code unit, surrogates are encoded separately and joined again by decode.
+     * @param code the code unit.
+     */
+    private void appendChar(int code) {
+        if (code < 0x80) {
+            append((byte) code);
+        } else if (code < 0x800) {
+            ascii = false;
+            append((byte) (0xC0 | (code >> 6)));
+            append((byte) (0x80 | (code & 0x3F)));
+        } else {
+            ascii = false;
+            append((byte) (0xE0 | (code >> 12)));
+            append((byte) (0x80 | ((code >> 6) & 0x3F)));
+            append((byte) (0x80 | (code & 0x3F)));
+        }
+    }
+
+    private void append(byte b) {
+        if (textLength == copy.length) {
+            copy = Arrays.copyOf(copy, copy.length * 2);
+            text = copy;
+        }
+        copy[textLength++] = b;
+    }
+
+    private void append(byte[] src, int off, int len) {
+        if (textLength + len > copy.length) {
+            copy = Arrays.copyOf(copy, Math.max(copy.length * 2, textLength + len));
+            text = copy;
+        }
+        System.arraycopy(src, off, copy, textLength, len);
+        textLength += len;
+    }
+
+    /**
+     * decodes UTF-8 into characters. Malformed sequences are replaced by U+FFFD,
+     * separately encoded surrogates are accepted.
+     * @param bytes the bytes.
+     * @param off the offset.
+     * @param len the number of bytes.
+     * @param out the destination.
+     */
+    static void decode(byte[] bytes, int off, int len, StringBuilder out) {
+        int end = off + len;
+        int i = off;
+        while (i < end) {
+            int b = bytes[i++];
+            if (b >= 0) {
+                out.append((char) b);
+            } else if ((b & 0xE0) == 0xC0 && i < end) {
+                out.append((char) (((b & 0x1F) << 6) | (bytes[i++] & 0x3F)));
+            } else if ((b & 0xF0) == 0xE0 && i + 1 < end) {
+                out.append((char) (((b & 0x0F) << 12) | ((bytes[i] & 0x3F) << 6) | (bytes[i + 1] & 0x3F)));
+                i += 2;
+            } else if ((b & 0xF8) == 0xF0 && i + 2 < end) {
+                out.appendCodePoint(((b & 0x07) << 18) | ((bytes[i] & 0x3F) << 12) | ((bytes[i + 1] & 0x3F) << 6) | (bytes[i + 2] & 0x3F));
+                i += 3;
+            } else {
+                out.append('\uFFFD');
+            }
+        }
+    }
+
+}
@@ -17,6 +17,8 @@ package nl.ctrlaltdev.json.transform.path;
 
 import java.util.List;
 
+import nl.ctrlaltdev.json.transform.parse.RawJson;
+
 public class IndexPath extends Path {
 
     private int index;
@@ -53,13 +55,13 @@ public class IndexPath extends Path {
     @SuppressWarnings("unchecked")
     @Override
     public Object get(Object root) {
-        List<Object> obj = (List<Object>) parent().get(root);
+        List<Object> obj = (List<Object>) RawJson.decode(parent().get(root));
         return (index < obj.size() ? obj.get(index) : null);
     }
 
     @SuppressWarnings("unchecked")
     public Object set(final Object root, Object x) {
-        Object node = this.parent().get(root);
+        Object node = RawJson.decode(this.parent().get(root));
         List<Object> obj = (List<Object>) node;
         while (obj.size() <= index) {
             obj.add(null);
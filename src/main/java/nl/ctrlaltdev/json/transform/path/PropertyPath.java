@@ -17,6 +17,8 @@ package nl.ctrlaltdev.json.transform.path;
 
 import java.util.Map;
 
+import nl.ctrlaltdev.json.transform.parse.RawJson;
+
 public class PropertyPath extends Path {
 
     private String property;
@@ -53,7 +55,7 @@ public class PropertyPath extends Path {
     @SuppressWarnings("unchecked")
     @Override
     public Object get(Object root) {
-        Map<String, Object> obj = (Map<String, Object>) parent().get(root);
+        Map<String, Object> obj = (Map<String, Object>) RawJson.decode(parent().get(root));
         if (obj == null) {
             return null;
         }
@@ -63,7 +65,7 @@ public class PropertyPath extends Path {
     @SuppressWarnings("unchecked")
     @Override
     public Object set(final Object root, Object x) {
-        Map<String, Object> obj = (Map<String, Object>) this.parent().get(root);
+        Map<String, Object> obj = (Map<String, Object>) RawJson.decode(this.parent().get(root));
         obj.put(property, x);
         return root;
     }
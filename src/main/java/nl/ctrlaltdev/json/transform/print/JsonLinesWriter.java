@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.print;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * writes documents as newline delimited Json, one compact document per line.
+ * All records are printed by one JsonWriter into one UTF-8 buffer, which is written out whenever it is full,
+ * so nothing is allocated per record. The output is flushed on flush and close, and optionally every
+ * so many records or bytes. Writers are not thread safe.
+ */
+public class JsonLinesWriter implements Closeable, Flushable {
+
+    private final Utf8Writer sink;
+    private final JsonWriter writer;
+    private long records;
+    private int flushRecords;
+    private long flushBytes;
+    private int pendingRecords;
+    private long flushed;
+
+    /**
+     * @param printer the printer whose settings are used for the records.
+     * @param out the output.
+     */
+    public JsonLinesWriter(JsonPrinter printer, OutputStream out) {
+        this(printer, new Utf8Writer(out));
+    }
+
+    /**
+     * @param printer the printer whose settings are used for the records.
+     * @param channel the output, a blocking channel.
+     */
+    public JsonLinesWriter(JsonPrinter printer, WritableByteChannel channel) {
+        this(printer, new Utf8Writer(channel));
+    }
+
+    private JsonLinesWriter(JsonPrinter printer, Utf8Writer sink) {
+        this.sink = sink;
+        this.writer = printer.newWriter(sink, false);
+    }
+
+    /**
+     * @param records flushes the output after every so many records, 1 flushes every record, 0 never does.
+     */
+    public void setFlushRecords(int records) {
+        if (records < 0) {
+            throw new IllegalArgumentException("records < 0");
+        }
+        this.flushRecords = records;
+    }
+
+    /**
+     * @param bytes flushes the output after the first record that brings the bytes written since
+     * the last flush to at least this many, 0 never does.
+     */
+    public void setFlushBytes(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("bytes < 0");
+        }
+        this.flushBytes = bytes;
+    }
+
+    /**
+     * @return the number of records written.
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * writes one record.
+     * @param document the Map/List/Value structure.
+     * @throws IOException when writing fails.
+     */
+    public void write(Object document) throws IOException {
+        writer.reset();
+        writer.value(document);
+        sink.write('\n');
+        records++;
+        pendingRecords++;
+        if (flushRecords > 0 && pendingRecords >= flushRecords
+                || flushBytes > 0 && sink.position() - flushed >= flushBytes) {
+            flush();
+        }
+    }
+
+    /**
+     * writes every remaining document as a record.
+     * @param documents the documents.
+     * @return the number of records written.
+     * @throws IOException when writing fails.
+     */
+    public long writeAll(Iterator<?> documents) throws IOException {
+        long count = 0;
+        while (documents.hasNext()) {
+            write(documents.next());
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * writes every document of the stream as a record, in encounter order.
+     * @param documents the documents.
+     * @return the number of records written.
+     * @throws IOException when writing fails.
+     */
+    public long writeAll(Stream<?> documents) throws IOException {
+        return writeAll(documents.iterator());
+    }
+
+    @Override
+    public void flush() throws IOException {
+        sink.flush();
+        pendingRecords = 0;
+        flushed = sink.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        sink.close();
+    }
+
+}
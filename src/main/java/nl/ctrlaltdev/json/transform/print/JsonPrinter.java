@@ -16,188 +16,247 @@
 package nl.ctrlaltdev.json.transform.print;
 
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.OutputStream;
 import java.io.Writer;
-import java.util.List;
-import java.util.SortedMap;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
-import nl.ctrlaltdev.json.transform.path.ValuePath;
 import nl.ctrlaltdev.json.transform.visitor.AbstractVisitor;
 
+/**
+ * prints the Map/List/Value structure as Json by walking it recursively with a JsonWriter.
+ * Printers hold no state between calls and are thread safe,
+ * the buffers toString and the UTF-8 output print into are reused per thread unless they grew beyond MAX_RETAINED.
+ * <p>
+ * Incompatible with 0.1.1, where the printer walked the structure as a visitor:
+ * <ul>
+ * <li>the protected isFirst(ValuePath) and isLast(ValuePath) hooks are gone, subclasses that override them
+ * no longer compile. renderString is the only hook left.</li>
+ * <li>pretty output puts the comma after an array element instead of at the start of the next line,
+ * and prints empty objects and arrays as {} and [].</li>
+ * <li>null values print as null instead of failing with a NullPointerException.</li>
+ * </ul>
+ * The printer still extends AbstractVisitor, but printing does not use it.
+ */
 public class JsonPrinter extends AbstractVisitor {
 
+    /**
+     * the maximum capacity in characters or bytes of a buffer that is kept for the next call.
+     */
+    public static final int MAX_RETAINED = 128 * 1024;
+
+    private static final ThreadLocal<StringBuilderWriter[]> WRITERS = new ThreadLocal<StringBuilderWriter[]>() {
+        @Override
+        protected StringBuilderWriter[] initialValue() {
+            return new StringBuilderWriter[1];
+        }
+    };
+
+    private static final ThreadLocal<Utf8Writer[]> ENCODERS = new ThreadLocal<Utf8Writer[]>() {
+        @Override
+        protected Utf8Writer[] initialValue() {
+            return new Utf8Writer[1];
+        }
+    };
+
+    private final boolean sorted;
+    private final StringEscaper escaper;
+
+    public JsonPrinter() {
+        this(false);
+    }
+
+    /**
+     * @param sorted when true the properties of objects are printed sorted by name,
+     * otherwise in the iteration order of their Map.
+     */
+    public JsonPrinter(boolean sorted) {
+        this(sorted, true);
+    }
+
+    /**
+     * @param sorted when true the properties of objects are printed sorted by name,
+     * otherwise in the iteration order of their Map.
+     * @param escapeSlash when false '/' is printed as is instead of as \\/, which keeps urls short.
+     */
+    public JsonPrinter(boolean sorted, boolean escapeSlash) {
+        this.sorted = sorted;
+        this.escaper = StringEscaper.get(escapeSlash);
+    }
+
     public String toString(Object obj) {
-        StringWriter writer = new StringWriter();
-        write(obj, writer, false);
-        return writer.toString();
+        return print(obj, false);
     }
 
     public String toPrettyString(Object obj) {
-        StringWriter writer = new StringWriter();
-        write(obj, writer, true);
-        return writer.toString();
+        return print(obj, true);
     }
 
-    public void write(Object obj, final Writer writer, final boolean pretty) {
-        visit(obj, new ValuePathVisitorImpl() {
-            private int level = 0;
-            private boolean first = true;
-            @Override
-            public void onValue(ValuePath source, ValuePath target) {
-                try {
-                    before(writer, pretty, source);
-                    Object value = source.get();
-                    if (value instanceof String) {
-                        renderString(writer, (String) value);
-                    } else {
-                        writer.append(value.toString());
-                    }
-                    after(writer, source);
-                } catch (IOException ex) {
-                    throw new RuntimeException(ex);
-                }
+    private String print(Object obj, boolean pretty) {
+        StringBuilderWriter[] pool = WRITERS.get();
+        StringBuilderWriter writer = pool[0];
+        pool[0] = null;
+        if (writer == null) {
+            writer = new StringBuilderWriter();
+        }
+        try {
+            write(obj, writer, pretty);
+            return writer.toString();
+        } finally {
+            if (writer.capacity() <= MAX_RETAINED) {
+                writer.clear();
+                pool[0] = writer;
             }
+        }
+    }
 
-            @Override
-            public void onEndObject(ValuePath source, ValuePath target) {
-                try {
-                    level--;
-                    if (pretty) {
-                        indent(writer);
-                    }
-                    writer.append("}");
-                    after(writer, source);
-                } catch (IOException ex) {
-                    throw new RuntimeException(ex);
-                }
-            }
+    /**
+     * @param obj the Map/List/Value structure.
+     * @return the UTF-8 encoded Json.
+     */
+    public byte[] toBytes(Object obj) {
+        return encode(obj, false);
+    }
 
-            @Override
-            public void onEndArray(ValuePath source, ValuePath target) {
-                try {
-                    level--;
-                    if (pretty) {
-                        indent(writer);
-                    }
-                    writer.append("]");
-                    after(writer, source);
-                } catch (IOException ex) {
-                    throw new RuntimeException(ex);
-                }
+    /**
+     * @param obj the Map/List/Value structure.
+     * @return the UTF-8 encoded, formatted Json.
+     */
+    public byte[] toPrettyBytes(Object obj) {
+        return encode(obj, true);
+    }
 
-            }
+    /**
+     * writes the structure with a JsonWriter, strings are rendered by renderString.
+     * @param obj the Map/List/Value structure.
+     * @param writer the output.
+     * @param pretty when true every property and element goes on its own, indented line.
+     */
+    public void write(Object obj, final Writer writer, final boolean pretty) {
+        try {
+            print(obj, writer, pretty);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
 
-            @Override
-            public boolean onBeginObject(ValuePath source, ValuePath target) {
-                try {
-                    before(writer, pretty, source);
-                    writer.append("{");
-                    level++;
-                    return true;
-                } catch (IOException ex) {
-                    throw new RuntimeException(ex);
-                }
-            }
+    /**
+     * writes the structure UTF-8 encoded, through a buffer that is reused per thread.
+     * The stream is flushed but not closed.
+     * @param obj the Map/List/Value structure.
+     * @param out the output.
+     * @param pretty when true every property and element goes on its own, indented line.
+     * @throws IOException when writing fails.
+     */
+    public void write(Object obj, OutputStream out, boolean pretty) throws IOException {
+        Utf8Writer encoder = takeEncoder();
+        try {
+            encoder.reset(out);
+            print(obj, encoder, pretty);
+            encoder.flush();
+        } finally {
+            releaseEncoder(encoder);
+        }
+    }
 
-            @Override
-            public boolean onBeginArray(ValuePath source, ValuePath target) {
-                try {
-                    before(writer, pretty, source);
-                    writer.append("[");
-                    level++;
-                    return true;
-                } catch (IOException ex) {
-                    throw new RuntimeException(ex);
-                }
-            }
+    /**
+     * writes the structure UTF-8 encoded, through a buffer that is reused per thread.
+     * The channel is not closed.
+     * @param obj the Map/List/Value structure.
+     * @param channel the output, a blocking channel.
+     * @param pretty when true every property and element goes on its own, indented line.
+     * @throws IOException when writing fails.
+     */
+    public void write(Object obj, WritableByteChannel channel, boolean pretty) throws IOException {
+        Utf8Writer encoder = takeEncoder();
+        try {
+            encoder.reset(channel);
+            print(obj, encoder, pretty);
+            encoder.flush();
+        } finally {
+            releaseEncoder(encoder);
+        }
+    }
 
-            private void before(final Writer writer, final boolean pretty, ValuePath source) throws IOException {
-                if (pretty) {
-                    indent(writer);
-                }
-                if (source.path().isProperty()) {
-                    renderString(writer, (String) source.path().getTop());
-                    writer.append(":");
-                } else if (source.path().isIndex()) {
-                    if (!isFirst(source)) {
-                        writer.append(",");
-                    }
-                }
-            }
+    /**
+     * writes the structure UTF-8 encoded into the buffer, from its position.
+     * @param obj the Map/List/Value structure.
+     * @param target the buffer, heap or direct.
+     * @param pretty when true every property and element goes on its own, indented line.
+     * @throws java.nio.BufferOverflowException when the Json does not fit, nothing is written then.
+     */
+    public void write(Object obj, ByteBuffer target, boolean pretty) {
+        Utf8Writer encoder = takeEncoder();
+        try {
+            print(obj, encoder, pretty);
+            encoder.writeTo(target);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            releaseEncoder(encoder);
+        }
+    }
 
-            private void after(final Writer writer, ValuePath source) throws IOException {
-                if (source.path().isProperty()) {
-                    if (!isLast(source)) {
-                        writer.append(",");
-                    }
-                }
-            }
+    /**
+     * @param out the output, the stream is not closed until the JsonLinesWriter is.
+     * @return a writer that prints documents as newline delimited Json, like this printer would.
+     */
+    public JsonLinesWriter lines(OutputStream out) {
+        return new JsonLinesWriter(this, out);
+    }
+
+    /**
+     * @param channel the output, a blocking channel that is not closed until the JsonLinesWriter is.
+     * @return a writer that prints documents as newline delimited Json, like this printer would.
+     */
+    public JsonLinesWriter lines(WritableByteChannel channel) {
+        return new JsonLinesWriter(this, channel);
+    }
+
+    private void print(Object obj, Writer writer, boolean pretty) throws IOException {
+        newWriter(writer, pretty).value(obj);
+    }
 
-            protected void indent(Writer writer) throws IOException {
-                if (!first) {
-                    writer.append(System.getProperty("line.separator"));
-                }
-                first = false;
-                for (int t = 0; t < level; t++) {
-                    writer.append("  ");
-                }
+    /**
+     * @return a JsonWriter with the settings of this printer, that renders strings with renderString.
+     */
+    JsonWriter newWriter(final Writer writer, boolean pretty) {
+        return new JsonWriter(writer, pretty, sorted) {
+            @Override
+            protected void string(String value) throws IOException {
+                renderString(writer, value);
             }
+        };
+    }
 
-        });
+    private byte[] encode(Object obj, boolean pretty) {
+        Utf8Writer encoder = takeEncoder();
+        try {
+            print(obj, encoder, pretty);
+            return encoder.toByteArray();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            releaseEncoder(encoder);
+        }
     }
 
-    @SuppressWarnings("unchecked")
-    protected boolean isLast(ValuePath source) {
-        String name = (String) source.path().getTop();
-        SortedMap<String, Object> obj = (SortedMap<String, Object>) source.parent().get();
-        return obj.lastKey().equals(name);
+    private static Utf8Writer takeEncoder() {
+        Utf8Writer[] pool = ENCODERS.get();
+        Utf8Writer encoder = pool[0];
+        pool[0] = null;
+        return encoder != null ? encoder : new Utf8Writer();
     }
 
-    @SuppressWarnings("unchecked")
-    protected boolean isFirst(ValuePath source) {
-        Object value = source.get();
-        List<Object> arr = (List<Object>) source.parent().get();
-        return arr.get(0) == value;
+    private static void releaseEncoder(Utf8Writer encoder) {
+        encoder.reset();
+        if (encoder.capacity() <= MAX_RETAINED) {
+            ENCODERS.get()[0] = encoder;
+        }
     }
 
     protected void renderString(Writer sb, String value) throws IOException {
-        sb.append("\"");
-        for (int t = 0; t < value.length(); t++) {
-            char c = value.charAt(t);
-            if (c == '"' || c == '\\' || c == '/') {
-                sb.append("\\");
-                sb.append(c);
-            } else if (c < 32) {
-                switch (c) {
-                case '\b':
-                    sb.append("\\b");
-                    break;
-                case '\f':
-                    sb.append("\\f");
-                    break;
-                case '\n':
-                    sb.append("\\n");
-                    break;
-                case '\r':
-                    sb.append("\\r");
-                    break;
-                case '\t':
-                    sb.append("\\t");
-                    break;
-                default:
-                    StringBuilder str = new StringBuilder(Integer.toHexString((int) c));
-                    while (str.length() < 4) {
-                        str.insert(0, "0");
-                    }
-                    sb.append("\\u");
-                    sb.append(str);
-                    break;
-                }
-            } else {
-                sb.append(c);
-            }
-        }
-        sb.append("\"");
+        escaper.write(sb, value);
     }
 
 }
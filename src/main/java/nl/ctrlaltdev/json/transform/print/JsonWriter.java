@@ -0,0 +1,337 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.print;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import nl.ctrlaltdev.json.transform.parse.RawJson;
+
+/**
+ * writes Json to a Writer as values are pushed, without building a document first.
+ * Commas, colons and indentation follow from a small stack of container states.
+ * value(Object) serializes a whole Map/List/Value structure recursively, for any Map implementation.
+ * Writers are not thread safe.
+ */
+public class JsonWriter implements Closeable, Flushable {
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private final Writer out;
+    private final boolean pretty;
+    private final boolean sorted;
+    private final StringEscaper escaper;
+    private final String lineSeparator;
+    private final char[] digits = new char[NumberFormatter.MAX_LENGTH];
+    private int[] stack = new int[16];
+    private int depth = 1;
+
+    public JsonWriter(Writer out) {
+        this(out, false, false);
+    }
+
+    /**
+     * @param out the output.
+     * @param pretty when true every property and element goes on its own, indented line.
+     */
+    public JsonWriter(Writer out, boolean pretty) {
+        this(out, pretty, false);
+    }
+
+    /**
+     * @param out the output.
+     * @param pretty when true every property and element goes on its own, indented line.
+     * @param sorted when true value(Object) writes the properties of objects sorted by name,
+     * otherwise in the iteration order of their Map.
+     */
+    public JsonWriter(Writer out, boolean pretty, boolean sorted) {
+        this(out, pretty, sorted, true);
+    }
+
+    /**
+     * @param out the output.
+     * @param pretty when true every property and element goes on its own, indented line.
+     * @param sorted when true value(Object) writes the properties of objects sorted by name,
+     * otherwise in the iteration order of their Map.
+     * @param escapeSlash when false '/' is written as is instead of as \\/, which keeps urls short.
+     */
+    public JsonWriter(Writer out, boolean pretty, boolean sorted, boolean escapeSlash) {
+        this.out = out;
+        this.pretty = pretty;
+        this.sorted = sorted;
+        this.escaper = StringEscaper.get(escapeSlash);
+        this.lineSeparator = pretty ? System.getProperty("line.separator") : null;
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        beforeValue();
+        push(EMPTY_OBJECT);
+        out.write('{');
+        return this;
+    }
+
+    public JsonWriter endObject() throws IOException {
+        return close(EMPTY_OBJECT, NONEMPTY_OBJECT, '}');
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        beforeValue();
+        push(EMPTY_ARRAY);
+        out.write('[');
+        return this;
+    }
+
+    public JsonWriter endArray() throws IOException {
+        return close(EMPTY_ARRAY, NONEMPTY_ARRAY, ']');
+    }
+
+    /**
+     * @param name the name of the next property.
+     * @return this.
+     * @throws IOException when writing fails.
+     */
+    public JsonWriter name(String name) throws IOException {
+        int top = stack[depth - 1];
+        if (top == NONEMPTY_OBJECT) {
+            out.write(',');
+        } else if (top != EMPTY_OBJECT) {
+            throw new IllegalStateException("Not expecting a name");
+        }
+        stack[depth - 1] = DANGLING_NAME;
+        newline();
+        string(name);
+        out.write(':');
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        string(value);
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        beforeValue();
+        out.write(digits, 0, NumberFormatter.format(value, digits));
+        return this;
+    }
+
+    /**
+     * @param value the value, written like Double.toString does but always with the shortest digits
+     * that read back as the same double.
+     * @return this.
+     * @throws IOException when writing fails.
+     */
+    public JsonWriter value(double value) throws IOException {
+        beforeValue();
+        out.write(digits, 0, NumberFormatter.format(value, digits));
+        return this;
+    }
+
+    /**
+     * @param value the value, Integers, Longs, Shorts, Bytes and Doubles are formatted without
+     * intermediate strings, other numbers are written as their toString.
+     * @return this.
+     * @throws IOException when writing fails.
+     */
+    public JsonWriter value(Number value) throws IOException {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return value(value.longValue());
+        } else if (value instanceof Double) {
+            return value(value.doubleValue());
+        } else if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        out.write(value.toString());
+        return this;
+    }
+
+    public JsonWriter nullValue() throws IOException {
+        beforeValue();
+        out.write("null");
+        return this;
+    }
+
+    /**
+     * writes a Map/List/Value structure, RawJson that has not been decoded is copied as is,
+     * numbers as by value(Number) and other values are written as their toString.
+     * @param value the value.
+     * @return this.
+     * @throws IOException when writing fails.
+     */
+    public JsonWriter value(Object value) throws IOException {
+        if (value instanceof String) {
+            return value((String) value);
+        } else if (value instanceof Map) {
+            return object((Map<?, ?>) value);
+        } else if (value instanceof List) {
+            return array((List<?>) value);
+        } else if (value instanceof Number) {
+            return value((Number) value);
+        } else if (value instanceof Boolean) {
+            return value(((Boolean) value).booleanValue());
+        } else if (value instanceof RawJson) {
+            RawJson raw = (RawJson) value;
+            if (raw.isDecoded()) {
+                return value(raw.decode());
+            }
+            beforeValue();
+            if (out instanceof Utf8Writer) {
+                raw.writeTo(((Utf8Writer) out).bytes());
+            } else {
+                raw.writeTo(out);
+            }
+            return this;
+        } else if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        out.write(value.toString());
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * writes a quoted and escaped string.
+     * @param value the string.
+     * @throws IOException when writing fails.
+     */
+    protected void string(String value) throws IOException {
+        escaper.write(out, value);
+    }
+
+    private JsonWriter object(Map<?, ?> map) throws IOException {
+        if (sorted && !(map instanceof SortedMap)) {
+            map = new TreeMap<Object, Object>(map);
+        }
+        beginObject();
+        for (Map.Entry<?, ?> e : map.entrySet()) {
+            name(String.valueOf(e.getKey()));
+            value(e.getValue());
+        }
+        return endObject();
+    }
+
+    private JsonWriter array(List<?> list) throws IOException {
+        beginArray();
+        if (list instanceof RandomAccess) {
+            for (int t = 0; t < list.size(); t++) {
+                value(list.get(t));
+            }
+        } else {
+            Iterator<?> it = list.iterator();
+            while (it.hasNext()) {
+                value(it.next());
+            }
+        }
+        return endArray();
+    }
+
+    /**
+     * forgets the document that was written, so the next one can follow in the same output.
+     */
+    void reset() {
+        depth = 1;
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+    private void beforeValue() throws IOException {
+        switch (stack[depth - 1]) {
+        case EMPTY_DOCUMENT:
+            stack[depth - 1] = NONEMPTY_DOCUMENT;
+            break;
+        case EMPTY_ARRAY:
+            stack[depth - 1] = NONEMPTY_ARRAY;
+            newline();
+            break;
+        case NONEMPTY_ARRAY:
+            out.write(',');
+            newline();
+            break;
+        case DANGLING_NAME:
+            stack[depth - 1] = NONEMPTY_OBJECT;
+            break;
+        case NONEMPTY_DOCUMENT:
+            throw new IllegalStateException("The document has already been written");
+        default:
+            throw new IllegalStateException("Expected a name");
+        }
+    }
+
+    private void push(int state) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = state;
+    }
+
+    private JsonWriter close(int empty, int nonempty, char c) throws IOException {
+        int top = stack[depth - 1];
+        if (top != empty && top != nonempty) {
+            throw new IllegalStateException(top == DANGLING_NAME ? "Expected a value" : "Unexpected " + c);
+        }
+        depth--;
+        if (top == nonempty) {
+            newline();
+        }
+        out.write(c);
+        return this;
+    }
+
+    private void newline() throws IOException {
+        if (pretty) {
+            out.write(lineSeparator);
+            for (int t = 1; t < depth; t++) {
+                out.write("  ");
+            }
+        }
+    }
+
+}
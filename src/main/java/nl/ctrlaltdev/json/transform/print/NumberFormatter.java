@@ -0,0 +1,341 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.print;
+
+import java.math.BigInteger;
+
+/**
+ * formats longs and doubles into a char array, without intermediate strings.
+ * Doubles get the shortest digits that read back as the same double, with the Schubfach algorithm
+ * by R. Giulietti, in the notation of Double.toString. The 126 bit powers of ten it needs
+ * are computed once, when the class is loaded.
+ */
+final class NumberFormatter {
+
+    /**
+     * the maximum length of a formatted long or double.
+     */
+    static final int MAX_LENGTH = 32;
+
+    private static final int Q_MIN = -1074;
+    private static final long C_MIN = 1L << 52;
+    private static final long C_TINY = 3;
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+    private static final int H = 17;
+    private static final long MASK_63 = 0x7fffffffffffffffL;
+
+    private static final String MIN_LONG = Long.toString(Long.MIN_VALUE);
+    private static final char[] TENS = new char[100];
+    private static final char[] ONES = new char[100];
+
+    static {
+        for (int t = 0; t < 100; t++) {
+            TENS[t] = (char) ('0' + t / 10);
+            ONES[t] = (char) ('0' + t % 10);
+        }
+    }
+
+    private static final long[] POW10 = powersOfTen();
+    private static final long[] G = powersOfTenTable();
+
+    private NumberFormatter() {
+        // NOP
+    }
+
+    /**
+     * @param value the value.
+     * @param buf the target, at least MAX_LENGTH long.
+     * @return the number of chars written.
+     */
+    static int format(long value, char[] buf) {
+        if (value == Long.MIN_VALUE) {
+            MIN_LONG.getChars(0, MIN_LONG.length(), buf, 0);
+            return MIN_LONG.length();
+        }
+        int pos = 0;
+        if (value < 0) {
+            buf[pos++] = '-';
+            value = -value;
+        }
+        int len = 1;
+        while (len < POW10.length && value >= POW10[len]) {
+            len++;
+        }
+        return digits(value, len, buf, pos);
+    }
+
+    /**
+     * @param value the value.
+     * @param buf the target, at least MAX_LENGTH long.
+     * @return the number of chars written, the chars are those of Double.toString with the shortest digits.
+     */
+    static int format(double value, char[] buf) {
+        long bits = Double.doubleToRawLongBits(value);
+        int bq = (int) (bits >>> 52) & 0x7ff;
+        long t = bits & (C_MIN - 1);
+        if (bq == 0x7ff) {
+            String str = Double.toString(value);
+            str.getChars(0, str.length(), buf, 0);
+            return str.length();
+        }
+        int pos = 0;
+        if (bits < 0) {
+            buf[pos++] = '-';
+        }
+        if (bq != 0) {
+            int mq = -Q_MIN + 1 - bq;
+            long c = C_MIN | t;
+            if (0 < mq && mq < 53) {
+                long f = c >> mq;
+                if (f << mq == c) {
+                    // an integer
+                    return chars(f, 0, buf, pos);
+                }
+            }
+            return decimal(-mq, c, 0, buf, pos);
+        }
+        if (t != 0) {
+            // subnormal, the smallest ones get an extra digit to work with
+            return t < C_TINY ? decimal(Q_MIN, 10 * t, -1, buf, pos) : decimal(Q_MIN, t, 0, buf, pos);
+        }
+        buf[pos++] = '0';
+        buf[pos++] = '.';
+        buf[pos++] = '0';
+        return pos;
+    }
+
+    /**
+     * finds the shortest decimal in the rounding interval of c 2^q.
+     */
+    private static int decimal(int q, long c, int dk, char[] buf, int pos) {
+        int out = (int) c & 1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if (c != C_MIN || q == Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            // the interval is asymmetric at powers of two
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 2;
+
+        long g1 = G[2 * (k - K_MIN)];
+        long g0 = G[2 * (k - K_MIN) + 1];
+
+        long vb = rop(g1, g0, cb << h);
+        long vbl = rop(g1, g0, cbl << h);
+        long vbr = rop(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) {
+            // try one digit less first
+            long sp10 = 10 * multiplyHigh(s, 115292150460684698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                return chars(upin ? sp10 : tp10, k, buf, pos);
+            }
+        }
+        long t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            return chars(uin ? s : t, k + dk, buf, pos);
+        }
+        // both are in the interval, take the closest, or the even one on a tie
+        long cmp = vb - (s + t << 1);
+        return chars(cmp < 0 || cmp == 0 && (s & 1) == 0 ? s : t, k + dk, buf, pos);
+    }
+
+    /**
+     * rounds c g 2^-127 to odd, with g = g1 2^63 + g0.
+     */
+    private static long rop(long g1, long g0, long cp) {
+        long x1 = multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | (z & MASK_63) + MASK_63 >>> 63;
+    }
+
+    /**
+     * writes f 10^e, which is not zero, in the notation of Double.toString.
+     */
+    private static int chars(long f, int e, char[] buf, int pos) {
+        int len = flog10pow2(64 - Long.numberOfLeadingZeros(f));
+        if (f >= POW10[len]) {
+            len++;
+        }
+        while (f % 10 == 0) {
+            f /= 10;
+            len--;
+            e++;
+        }
+        // the value is 0.ddd 10^e now
+        e += len;
+        if (0 < e && e <= 7) {
+            if (len <= e) {
+                pos = digits(f, len, buf, pos);
+                for (int t = len; t < e; t++) {
+                    buf[pos++] = '0';
+                }
+                buf[pos++] = '.';
+                buf[pos++] = '0';
+                return pos;
+            }
+            digits(f, len, buf, pos + 1);
+            System.arraycopy(buf, pos + 1, buf, pos, e);
+            buf[pos + e] = '.';
+            return pos + len + 1;
+        }
+        if (-3 < e && e <= 0) {
+            buf[pos++] = '0';
+            buf[pos++] = '.';
+            for (int t = e; t < 0; t++) {
+                buf[pos++] = '0';
+            }
+            return digits(f, len, buf, pos);
+        }
+        digits(f, len, buf, pos + 1);
+        buf[pos] = buf[pos + 1];
+        buf[pos + 1] = '.';
+        pos += len + 1;
+        if (len == 1) {
+            buf[pos++] = '0';
+        }
+        buf[pos++] = 'E';
+        int exp = e - 1;
+        if (exp < 0) {
+            buf[pos++] = '-';
+            exp = -exp;
+        }
+        if (exp >= 100) {
+            buf[pos++] = (char) ('0' + exp / 100);
+            exp %= 100;
+            buf[pos++] = (char) ('0' + exp / 10);
+        } else if (exp >= 10) {
+            buf[pos++] = (char) ('0' + exp / 10);
+        }
+        buf[pos++] = (char) ('0' + exp % 10);
+        return pos;
+    }
+
+    /**
+     * writes the len digits of v, two at a time, going back from the end.
+     */
+    private static int digits(long v, int len, char[] buf, int pos) {
+        int end = pos + len;
+        int t = end;
+        while (v > Integer.MAX_VALUE) {
+            long q = v / 100;
+            int r = (int) (v - q * 100);
+            v = q;
+            buf[--t] = ONES[r];
+            buf[--t] = TENS[r];
+        }
+        int i = (int) v;
+        while (i >= 100) {
+            int q = i / 100;
+            int r = i - q * 100;
+            i = q;
+            buf[--t] = ONES[r];
+            buf[--t] = TENS[r];
+        }
+        if (i >= 10) {
+            buf[--t] = ONES[i];
+            buf[--t] = TENS[i];
+        } else {
+            buf[--t] = (char) ('0' + i);
+        }
+        return end;
+    }
+
+    /**
+     * @return floor(log10(2^e)).
+     */
+    private static int flog10pow2(int e) {
+        return (int) (e * 661971961083L >> 41);
+    }
+
+    /**
+     * @return floor(log10(3/4 2^e)).
+     */
+    private static int flog10threeQuartersPow2(int e) {
+        return (int) (e * 661971961083L + -274743187321L >> 41);
+    }
+
+    /**
+     * @return floor(log2(10^e)).
+     */
+    private static int flog2pow10(int e) {
+        return (int) (e * 913124641741L >> 38);
+    }
+
+    /**
+     * Math.multiplyHigh, which Java 8 does not have.
+     */
+    private static long multiplyHigh(long x, long y) {
+        long x1 = x >> 32;
+        long x2 = x & 0xffffffffL;
+        long y1 = y >> 32;
+        long y2 = y & 0xffffffffL;
+        long z2 = x2 * y2;
+        long t = x1 * y2 + (z2 >>> 32);
+        long z1 = (t & 0xffffffffL) + x2 * y1;
+        long z0 = t >> 32;
+        return x1 * y1 + z0 + (z1 >> 32);
+    }
+
+    private static long[] powersOfTen() {
+        long[] pow10 = new long[H + 2];
+        pow10[0] = 1;
+        for (int t = 1; t < pow10.length; t++) {
+            pow10[t] = pow10[t - 1] * 10;
+        }
+        return pow10;
+    }
+
+    /**
+     * for every k holds g = floor(10^-k 2^-r) + 1, split in its upper and lower 63 bits,
+     * with r chosen so that 2^125 <= 10^-k 2^-r < 2^126.
+     */
+    private static long[] powersOfTenTable() {
+        long[] g = new long[2 * (K_MAX - K_MIN + 1)];
+        BigInteger mask = BigInteger.ONE.shiftLeft(63).subtract(BigInteger.ONE);
+        for (int k = K_MIN; k <= K_MAX; k++) {
+            int r = flog2pow10(-k) - 125;
+            BigInteger beta;
+            if (k <= 0) {
+                BigInteger pow = BigInteger.TEN.pow(-k);
+                beta = r <= 0 ? pow.shiftLeft(-r) : pow.shiftRight(r);
+            } else {
+                beta = BigInteger.ONE.shiftLeft(-r).divide(BigInteger.TEN.pow(k));
+            }
+            beta = beta.add(BigInteger.ONE);
+            g[2 * (k - K_MIN)] = beta.shiftRight(63).longValue();
+            g[2 * (k - K_MIN) + 1] = beta.and(mask).longValue();
+        }
+        return g;
+    }
+
+}
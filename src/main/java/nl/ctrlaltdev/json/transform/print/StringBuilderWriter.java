@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.print;
+
+import java.io.Writer;
+
+/**
+ * an unsynchronized Writer that appends to a StringBuilder, reused per thread by the printer.
+ */
+final class StringBuilderWriter extends Writer {
+
+    private final StringBuilder sb = new StringBuilder(256);
+
+    @Override
+    public void write(int c) {
+        sb.append((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+        sb.append(cbuf, off, len);
+    }
+
+    @Override
+    public void write(String str) {
+        sb.append(str);
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+        sb.append(str, off, off + len);
+    }
+
+    @Override
+    public Writer append(CharSequence csq) {
+        sb.append(csq);
+        return this;
+    }
+
+    @Override
+    public Writer append(char c) {
+        sb.append(c);
+        return this;
+    }
+
+    @Override
+    public void flush() {
+        // NOP
+    }
+
+    @Override
+    public void close() {
+        // NOP
+    }
+
+    int capacity() {
+        return sb.capacity();
+    }
+
+    void clear() {
+        sb.setLength(0);
+    }
+
+    @Override
+    public String toString() {
+        return sb.toString();
+    }
+
+}
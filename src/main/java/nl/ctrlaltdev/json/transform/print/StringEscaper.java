@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.print;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * writes quoted Json strings. A 128 entry table holds the escape sequence of every ASCII character
+ * that needs one, the clean runs between them are written with a single bulk write.
+ */
+final class StringEscaper {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    static final StringEscaper ESCAPE_SLASH = new StringEscaper(true);
+    static final StringEscaper KEEP_SLASH = new StringEscaper(false);
+
+    private final String[] table = new String[128];
+
+    private StringEscaper(boolean slash) {
+        for (int c = 0; c < 32; c++) {
+            table[c] = "\\u00" + HEX[c >> 4] + HEX[c & 15];
+        }
+        table['\b'] = "\\b";
+        table['\f'] = "\\f";
+        table['\n'] = "\\n";
+        table['\r'] = "\\r";
+        table['\t'] = "\\t";
+        table['"'] = "\\\"";
+        table['\\'] = "\\\\";
+        if (slash) {
+            table['/'] = "\\/";
+        }
+    }
+
+    static StringEscaper get(boolean slash) {
+        return slash ? ESCAPE_SLASH : KEEP_SLASH;
+    }
+
+    /**
+     * writes a quoted and escaped string.
+     * @param out the output.
+     * @param value the string.
+     * @throws IOException when writing fails.
+     */
+    void write(Writer out, String value) throws IOException {
+        String[] table = this.table;
+        int len = value.length();
+        int start = 0;
+        out.write('"');
+        for (int t = 0; t < len; t++) {
+            char c = value.charAt(t);
+            if (c < 128 && table[c] != null) {
+                if (t > start) {
+                    out.write(value, start, t - start);
+                }
+                out.write(table[c]);
+                start = t + 1;
+            }
+        }
+        if (start < len) {
+            out.write(value, start, len - start);
+        }
+        out.write('"');
+    }
+
+}
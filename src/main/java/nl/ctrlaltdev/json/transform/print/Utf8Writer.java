@@ -0,0 +1,338 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.print;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * an unsynchronized Writer that encodes to UTF-8 straight into a byte array. Runs of ASCII characters
+ * are copied without encoding. Without a destination the array grows to hold the whole output,
+ * with an OutputStream or a blocking channel it is written out whenever it is full.
+ * Unpaired surrogates are written as '?', like String.getBytes does.
+ */
+public final class Utf8Writer extends Writer {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private byte[] buf;
+    private int count;
+    private OutputStream out;
+    private WritableByteChannel channel;
+    private char highSurrogate;
+    private long drained;
+    private OutputStream bytes;
+
+    /**
+     * collects the output in memory, see toByteArray.
+     */
+    public Utf8Writer() {
+        this.buf = new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * @param out the destination of the bytes.
+     */
+    public Utf8Writer(OutputStream out) {
+        this.buf = new byte[BUFFER_SIZE];
+        this.out = out;
+    }
+
+    /**
+     * @param channel the destination of the bytes, a blocking channel.
+     */
+    public Utf8Writer(WritableByteChannel channel) {
+        this.buf = new byte[BUFFER_SIZE];
+        this.channel = channel;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        if (c < 0x80 && highSurrogate == 0) {
+            if (count == buf.length) {
+                makeRoom(1);
+            }
+            buf[count++] = (byte) c;
+        } else {
+            encode((char) c);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        int end = off + len;
+        while (off < end) {
+            if (highSurrogate != 0) {
+                encode(str.charAt(off));
+                off++;
+                continue;
+            }
+            if (count == buf.length) {
+                makeRoom(1);
+            }
+            int stop = Math.min(end, off + buf.length - count);
+            byte[] b = buf;
+            int n = count;
+            char c;
+            while (off < stop && (c = str.charAt(off)) < 0x80) {
+                b[n++] = (byte) c;
+                off++;
+            }
+            count = n;
+            if (off < stop) {
+                encode(str.charAt(off++));
+            }
+        }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        int end = off + len;
+        while (off < end) {
+            if (highSurrogate != 0) {
+                encode(cbuf[off]);
+                off++;
+                continue;
+            }
+            if (count == buf.length) {
+                makeRoom(1);
+            }
+            int stop = Math.min(end, off + buf.length - count);
+            byte[] b = buf;
+            int n = count;
+            char c;
+            while (off < stop && (c = cbuf[off]) < 0x80) {
+                b[n++] = (byte) c;
+                off++;
+            }
+            count = n;
+            if (off < stop) {
+                encode(cbuf[off++]);
+            }
+        }
+    }
+
+    @Override
+    public void write(String str) throws IOException {
+        write(str, 0, str.length());
+    }
+
+    @Override
+    public Writer append(CharSequence csq) throws IOException {
+        String str = String.valueOf(csq);
+        write(str, 0, str.length());
+        return this;
+    }
+
+    @Override
+    public Writer append(char c) throws IOException {
+        write(c);
+        return this;
+    }
+
+    /**
+     * @return a stream that appends bytes as they are, for content that is already UTF-8 encoded.
+     */
+    public OutputStream bytes() {
+        if (bytes == null) {
+            bytes = new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    writeByte(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    writeBytes(b, off, len);
+                }
+            };
+        }
+        return bytes;
+    }
+
+    /**
+     * writes the buffered bytes to the destination, if there is one.
+     * @throws IOException when writing fails.
+     */
+    @Override
+    public void flush() throws IOException {
+        drain();
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        if (out != null) {
+            out.close();
+        } else if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * @return the number of buffered bytes.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return the number of bytes written since the last reset, including the buffered ones.
+     */
+    public long position() {
+        return drained + count;
+    }
+
+    /**
+     * @return a copy of the buffered bytes.
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, count);
+    }
+
+    /**
+     * copies the buffered bytes into the buffer.
+     * @param target the target.
+     * @throws java.nio.BufferOverflowException when the bytes do not fit, nothing is copied then.
+     */
+    public void writeTo(ByteBuffer target) {
+        target.put(buf, 0, count);
+    }
+
+    /**
+     * discards the buffered bytes and the destination, keeping the array.
+     */
+    public void reset() {
+        count = 0;
+        drained = 0;
+        highSurrogate = 0;
+        out = null;
+        channel = null;
+    }
+
+    /**
+     * discards the buffered bytes and sends further output to the stream.
+     * @param out the destination.
+     */
+    public void reset(OutputStream out) {
+        reset();
+        this.out = out;
+    }
+
+    /**
+     * discards the buffered bytes and sends further output to the channel.
+     * @param channel the destination, a blocking channel.
+     */
+    public void reset(WritableByteChannel channel) {
+        reset();
+        this.channel = channel;
+    }
+
+    int capacity() {
+        return buf.length;
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (count == buf.length) {
+            makeRoom(1);
+        }
+        buf[count++] = (byte) b;
+    }
+
+    private void writeBytes(byte[] b, int off, int len) throws IOException {
+        if (len > buf.length - count) {
+            makeRoom(len);
+            if (len > buf.length - count) {
+                drain();
+                write(b, off, len);
+                return;
+            }
+        }
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    private void encode(char c) throws IOException {
+        if (count + 4 > buf.length) {
+            makeRoom(4);
+        }
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int code = Character.toCodePoint(high, c);
+                buf[count++] = (byte) (0xF0 | (code >> 18));
+                buf[count++] = (byte) (0x80 | ((code >> 12) & 0x3F));
+                buf[count++] = (byte) (0x80 | ((code >> 6) & 0x3F));
+                buf[count++] = (byte) (0x80 | (code & 0x3F));
+                return;
+            }
+            buf[count++] = '?';
+        }
+        if (c < 0x80) {
+            buf[count++] = (byte) c;
+        } else if (c < 0x800) {
+            buf[count++] = (byte) (0xC0 | (c >> 6));
+            buf[count++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            buf[count++] = '?';
+        } else {
+            buf[count++] = (byte) (0xE0 | (c >> 12));
+            buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buf[count++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    /**
+     * makes room for at least the given number of bytes, by writing the buffer out or by growing it.
+     */
+    private void makeRoom(int len) throws IOException {
+        if (out != null || channel != null) {
+            drain();
+        } else {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + len));
+        }
+    }
+
+    private void drain() throws IOException {
+        if (count > 0 && (out != null || channel != null)) {
+            write(buf, 0, count);
+            count = 0;
+        }
+    }
+
+    private void write(byte[] b, int off, int len) throws IOException {
+        drained += len;
+        if (out != null) {
+            out.write(b, off, len);
+        } else {
+            ByteBuffer src = ByteBuffer.wrap(b, off, len);
+            while (src.hasRemaining()) {
+                channel.write(src);
+            }
+        }
+    }
+
+}
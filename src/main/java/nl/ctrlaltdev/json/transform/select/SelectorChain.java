@@ -19,6 +19,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+import nl.ctrlaltdev.json.transform.parse.RawJson;
 import nl.ctrlaltdev.json.transform.path.Path;
 import nl.ctrlaltdev.json.transform.path.ValuePath;
 import nl.ctrlaltdev.json.transform.select.jsonpath.AnyNodesSelector;
@@ -33,6 +34,21 @@ public class SelectorChain extends AbstractVisitor implements Select {
         this.selectors = selectors;
     }
 
+    /**
+     * @return the selectors, from the root towards the selected node.
+     */
+    public Selector[] getSelectors() {
+        return selectors.clone();
+    }
+
+    /**
+     * selectors descend into pass-through subtrees, so a RawJson is decoded.
+     */
+    @Override
+    protected Object resolve(Object node) {
+        return RawJson.decode(node);
+    }
+
     public List<ValuePath> select(Object source) {
         final List<ValuePath> matches = new ArrayList<ValuePath>();
         visit(source, new ValuePathVisitorImpl() {
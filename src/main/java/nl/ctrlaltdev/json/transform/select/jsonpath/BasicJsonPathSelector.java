@@ -32,6 +32,14 @@ public class BasicJsonPathSelector implements Selector {
         this.valueType = valueType;
     }
 
+    public NameType getNameType() {
+        return nameType;
+    }
+
+    public Object getArgument() {
+        return arg;
+    }
+
     @Override
     public boolean matches(ValuePath valuePath) {
         Path path = valuePath.path();
@@ -25,6 +25,10 @@ public class IndexSelector implements Selector {
         this.index = index;
     }
 
+    public int getIndex() {
+        return index;
+    }
+
     @Override
     public boolean matches(ValuePath path) {
         if (path.path().isIndex()) {
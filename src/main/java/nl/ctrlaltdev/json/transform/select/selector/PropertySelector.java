@@ -25,6 +25,10 @@ public class PropertySelector implements Selector {
         this.property = property;
     }
 
+    public String getProperty() {
+        return property;
+    }
+
     @Override
     public boolean matches(ValuePath path) {
         if (path.path().isProperty()) {
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map that stores its keys and values in two parallel arrays, in insertion order.
+ * Small maps are searched linearly, beyond a threshold an open addressing
+ * hash index over the arrays is maintained. Keys can not be null.
+ */
+public class CompactMap extends AbstractMap<String, Object> {
+
+    /**
+     * up to this size keys are searched linearly.
+     */
+    static final int LINEAR_THRESHOLD = 8;
+
+    private static final String[] NO_KEYS = new String[0];
+    private static final Object[] NO_VALUES = new Object[0];
+
+    private String[] keys;
+    private Object[] values;
+    private int size;
+    private int[] index;
+    private int modCount;
+
+    public CompactMap() {
+        keys = NO_KEYS;
+        values = NO_VALUES;
+    }
+
+    public CompactMap(int capacity) {
+        keys = new String[capacity];
+        values = new Object[capacity];
+    }
+
+    public CompactMap(Map<String, ?> source) {
+        this(source.size());
+        for (Map.Entry<String, ?> e : source.entrySet()) {
+            put(e.getKey(), e.getValue());
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int idx = indexOf(key);
+        return idx < 0 ? null : values[idx];
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        int idx = indexOf(key);
+        if (idx >= 0) {
+            Object old = values[idx];
+            values[idx] = value;
+            return old;
+        }
+        if (size == keys.length) {
+            int capacity = Math.max(4, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        keys[size] = key;
+        values[size] = value;
+        size++;
+        modCount++;
+        if (index != null) {
+            if (size * 2 > index.length) {
+                rebuildIndex();
+            } else {
+                insert(index, key, size);
+            }
+        } else if (size > LINEAR_THRESHOLD) {
+            rebuildIndex();
+        }
+        return null;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int idx = indexOf(key);
+        if (idx < 0) {
+            return null;
+        }
+        Object old = values[idx];
+        removeAt(idx);
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+        index = null;
+        modCount++;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Object>>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int indexOf(Object key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        if (index == null) {
+            for (int t = 0; t < size; t++) {
+                String k = keys[t];
+                if (k == key || k.equals(key)) {
+                    return t;
+                }
+            }
+            return -1;
+        }
+        int mask = index.length - 1;
+        int p = spread(key.hashCode()) & mask;
+        int slot;
+        while ((slot = index[p]) != 0) {
+            String k = keys[slot - 1];
+            if (k == key || k.equals(key)) {
+                return slot - 1;
+            }
+            p = (p + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void removeAt(int idx) {
+        int tail = size - idx - 1;
+        if (tail > 0) {
+            System.arraycopy(keys, idx + 1, keys, idx, tail);
+            System.arraycopy(values, idx + 1, values, idx, tail);
+        }
+        size--;
+        keys[size] = null;
+        values[size] = null;
+        modCount++;
+        if (index != null) {
+            if (size > LINEAR_THRESHOLD) {
+                rebuildIndex();
+            } else {
+                index = null;
+            }
+        }
+    }
+
+    private void rebuildIndex() {
+        int capacity = Integer.highestOneBit(size * 4 - 1);
+        int[] table = new int[capacity];
+        for (int t = 0; t < size; t++) {
+            insert(table, keys[t], t + 1);
+        }
+        index = table;
+    }
+
+    private static void insert(int[] table, String key, int slot) {
+        int mask = table.length - 1;
+        int p = spread(key.hashCode()) & mask;
+        while (table[p] != 0) {
+            p = (p + 1) & mask;
+        }
+        table[p] = slot;
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<String, Object>> {
+        private int next = 0;
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            last = next++;
+            return new Entry(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            removeAt(last);
+            next = last;
+            last = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    private final class Entry implements Map.Entry<String, Object> {
+        private final int idx;
+        private final String key;
+
+        private Entry(int idx) {
+            this.idx = idx;
+            this.key = keys[idx];
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public Object getValue() {
+            return keys[idx] == key ? values[idx] : get(key);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            return put(key, value);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) obj;
+            Object value = getValue();
+            return key.equals(e.getKey()) && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            Object value = getValue();
+            return key.hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * creates array backed CompactMap objects, which keep their properties in insertion order.
+ * Suited for documents with many small objects.
+ */
+public class CompactNodeFactory implements NodeFactory {
+
+    @Override
+    public Map<String, Object> newObject() {
+        return new CompactMap();
+    }
+
+    @Override
+    public List<Object> newArray() {
+        return new ArrayList<Object>();
+    }
+
+}
@@ -15,17 +15,36 @@
  */
 package nl.ctrlaltdev.json.transform.util;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 
 public final class NodeUtils {
 
+    private static volatile NodeFactory factory = new SortedNodeFactory();
+
     private NodeUtils() {
         // Util
     }
 
+    /**
+     * @return the factory used by newObject() and newArray().
+     */
+    public static NodeFactory getNodeFactory() {
+        return factory;
+    }
+
+    /**
+     * replaces the factory used by newObject() and newArray().
+     * Parsers, visitors and merge strategies constructed afterwards use it by default.
+     * @param nodeFactory the factory, the default is a SortedNodeFactory.
+     */
+    public static void setNodeFactory(NodeFactory nodeFactory) {
+        if (nodeFactory == null) {
+            throw new IllegalArgumentException("nodeFactory");
+        }
+        factory = nodeFactory;
+    }
+
     @SuppressWarnings("rawtypes")
     public static boolean isEmpty(Object obj) {
         if (obj == null) {
@@ -73,11 +92,11 @@ public final class NodeUtils {
     }
 
     public static Map<String, Object> newObject() {
-        return new TreeMap<String, Object>();
+        return factory.newObject();
     }
 
     public static List<Object> newArray() {
-        return new ArrayList<Object>();
+        return factory.newArray();
     }
 
     public static Object newInstanceOf(Object source) {
@@ -127,7 +146,9 @@ public final class NodeUtils {
     }
 
     public static Map<String, Object> shallowCopy(Map<String, Object> object) {
-        return new TreeMap<String, Object>(object);
+        Map<String, Object> copy = newObject();
+        copy.putAll(object);
+        return copy;
     }
 
 }
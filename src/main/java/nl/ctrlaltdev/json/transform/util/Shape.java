@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * immutable, shared, ordered set of property names of ShapedMap instances.
+ * Shapes form a tree: adding a property to an object moves it from its shape to a child shape,
+ * so objects that receive the same properties in the same order end up sharing one shape.
+ */
+final class Shape {
+
+    private static final String[] NO_KEYS = new String[0];
+
+    private final Shape root;
+    private final String[] keys;
+    private final int[] index;
+    private final int maxKeys;
+    private final AtomicInteger budget;
+    private final ConcurrentMap<String, Shape> transitions = new ConcurrentHashMap<String, Shape>(4);
+
+    /**
+     * creates a new root shape.
+     * @param maxShapes the maximum number of shapes in the tree.
+     * @param maxKeys the maximum number of keys in a shape.
+     */
+    Shape(int maxShapes, int maxKeys) {
+        this.root = this;
+        this.keys = NO_KEYS;
+        this.index = null;
+        this.maxKeys = maxKeys;
+        this.budget = new AtomicInteger(maxShapes);
+    }
+
+    private Shape(Shape parent, String key) {
+        this.root = parent.root;
+        this.maxKeys = parent.maxKeys;
+        this.budget = parent.budget;
+        int size = parent.keys.length;
+        this.keys = new String[size + 1];
+        System.arraycopy(parent.keys, 0, keys, 0, size);
+        keys[size] = key;
+        this.index = keys.length > CompactMap.LINEAR_THRESHOLD ? buildIndex(keys) : null;
+    }
+
+    /**
+     * @return the number of shapes that can still be created in the tree.
+     */
+    int remaining() {
+        return budget.get();
+    }
+
+    Shape root() {
+        return root;
+    }
+
+    int size() {
+        return keys.length;
+    }
+
+    String key(int idx) {
+        return keys[idx];
+    }
+
+    int indexOf(Object key) {
+        if (index == null) {
+            for (int t = 0; t < keys.length; t++) {
+                String k = keys[t];
+                if (k == key || k.equals(key)) {
+                    return t;
+                }
+            }
+            return -1;
+        }
+        int mask = index.length - 1;
+        int p = spread(key.hashCode()) & mask;
+        int slot;
+        while ((slot = index[p]) != 0) {
+            String k = keys[slot - 1];
+            if (k == key || k.equals(key)) {
+                return slot - 1;
+            }
+            p = (p + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @param key the key to add, not part of this shape.
+     * @return the shape with the key appended or null when the tree has no room for it.
+     */
+    Shape with(String key) {
+        Shape next = transitions.get(key);
+        if (next != null) {
+            return next;
+        }
+        if (keys.length >= maxKeys || !reserve()) {
+            return null;
+        }
+        next = new Shape(this, key);
+        Shape existing = transitions.putIfAbsent(key, next);
+        if (existing != null) {
+            budget.incrementAndGet();
+            return existing;
+        }
+        return next;
+    }
+
+    /**
+     * takes one shape from the budget, never below zero, so failed transitions cost nothing.
+     */
+    private boolean reserve() {
+        while (true) {
+            int left = budget.get();
+            if (left <= 0) {
+                return false;
+            }
+            if (budget.compareAndSet(left, left - 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param idx the index of the key to remove.
+     * @return the shape without the key or null when the tree has no room for it.
+     */
+    Shape without(int idx) {
+        Shape result = root;
+        for (int t = 0; t < keys.length && result != null; t++) {
+            if (t != idx) {
+                result = result.with(keys[t]);
+            }
+        }
+        return result;
+    }
+
+    private static int[] buildIndex(String[] keys) {
+        int[] table = new int[Integer.highestOneBit(keys.length * 4 - 1)];
+        int mask = table.length - 1;
+        for (int t = 0; t < keys.length; t++) {
+            int p = spread(keys[t].hashCode()) & mask;
+            while (table[p] != 0) {
+                p = (p + 1) & mask;
+            }
+            table[p] = t + 1;
+        }
+        return table;
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+}
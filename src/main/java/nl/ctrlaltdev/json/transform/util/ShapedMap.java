@@ -0,0 +1,276 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map that shares its ordered set of keys (its shape) with other maps that have the same keys,
+ * and only stores its own values. When the shape tree is exhausted the map falls back to
+ * storing its own keys in a CompactMap. Keys can not be null.
+ */
+public class ShapedMap extends AbstractMap<String, Object> {
+
+    private static final Object[] NO_VALUES = new Object[0];
+
+    private Shape shape;
+    private Object[] values = NO_VALUES;
+    private Map<String, Object> dictionary;
+    private int modCount;
+
+    ShapedMap(Shape shape) {
+        this.shape = shape;
+    }
+
+    @Override
+    public int size() {
+        return dictionary != null ? dictionary.size() : shape.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (dictionary != null) {
+            return dictionary.containsKey(key);
+        }
+        return shape.indexOf(checkKey(key)) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (dictionary != null) {
+            return dictionary.get(key);
+        }
+        int idx = shape.indexOf(checkKey(key));
+        return idx < 0 ? null : values[idx];
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        if (dictionary != null) {
+            return dictionary.put(key, value);
+        }
+        int idx = shape.indexOf(checkKey(key));
+        if (idx >= 0) {
+            Object old = values[idx];
+            values[idx] = value;
+            return old;
+        }
+        Shape next = shape.with(key);
+        if (next == null) {
+            return toDictionary().put(key, value);
+        }
+        int size = shape.size();
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(4, size * 2));
+        }
+        values[size] = value;
+        shape = next;
+        modCount++;
+        return null;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if (dictionary != null) {
+            return dictionary.remove(key);
+        }
+        int idx = shape.indexOf(checkKey(key));
+        if (idx < 0) {
+            return null;
+        }
+        Object old = values[idx];
+        removeAt(idx);
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        if (dictionary != null) {
+            dictionary.clear();
+        } else {
+            values = NO_VALUES;
+            shape = shape.root();
+            modCount++;
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        if (dictionary != null) {
+            return dictionary.entrySet();
+        }
+        return new AbstractSet<Map.Entry<String, Object>>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                if (dictionary != null) {
+                    return dictionary.entrySet().iterator();
+                }
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return ShapedMap.this.size();
+            }
+        };
+    }
+
+    /**
+     * @return the shape of this map, null when it stores its own keys.
+     */
+    Shape shape() {
+        return dictionary != null ? null : shape;
+    }
+
+    private Object checkKey(Object key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        return key;
+    }
+
+    private void removeAt(int idx) {
+        Shape next = shape.without(idx);
+        if (next == null) {
+            toDictionary().remove(shape.key(idx));
+            return;
+        }
+        int size = shape.size();
+        System.arraycopy(values, idx + 1, values, idx, size - idx - 1);
+        values[size - 1] = null;
+        shape = next;
+        modCount++;
+    }
+
+    private Map<String, Object> toDictionary() {
+        CompactMap map = new CompactMap(shape.size() + 1);
+        for (int t = 0; t < shape.size(); t++) {
+            map.put(shape.key(t), values[t]);
+        }
+        dictionary = map;
+        values = NO_VALUES;
+        modCount++;
+        return dictionary;
+    }
+
+    /**
+     * iterates over the shape, and over the dictionary when a removal through the iterator
+     * makes the map fall back to it.
+     */
+    private final class EntryIterator implements Iterator<Map.Entry<String, Object>> {
+        private int next = 0;
+        private int last = -1;
+        private int expectedModCount = modCount;
+        private Iterator<Map.Entry<String, Object>> rest;
+
+        @Override
+        public boolean hasNext() {
+            return rest != null ? rest.hasNext() : next < shape.size();
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+            if (rest != null) {
+                return rest.next();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = next++;
+            return new Entry(shape.key(last));
+        }
+
+        @Override
+        public void remove() {
+            if (rest != null) {
+                rest.remove();
+                return;
+            }
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            removeAt(last);
+            if (dictionary != null) {
+                // the dictionary keeps the order of the shape, continue after the removed key
+                rest = dictionary.entrySet().iterator();
+                for (int t = 0; t < last; t++) {
+                    rest.next();
+                }
+            }
+            next = last;
+            last = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    private final class Entry implements Map.Entry<String, Object> {
+        private final String key;
+
+        private Entry(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public Object getValue() {
+            return get(key);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            return put(key, value);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) obj;
+            Object value = getValue();
+            return key.equals(e.getKey()) && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            Object value = getValue();
+            return key.hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+
+}
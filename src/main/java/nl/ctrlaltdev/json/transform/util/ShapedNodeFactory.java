@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * creates ShapedMap objects. Objects created by the same factory that get the same properties
+ * in the same order share their keys, so each record in an array of similar records only stores its values.
+ */
+public class ShapedNodeFactory implements NodeFactory {
+
+    private final Shape root;
+
+    public ShapedNodeFactory() {
+        this(4096, 64);
+    }
+
+    /**
+     * @param maxShapes the maximum number of shapes to create, objects with other key sets store their own keys.
+     * @param maxKeys the maximum number of keys in a shape, larger objects store their own keys.
+     */
+    public ShapedNodeFactory(int maxShapes, int maxKeys) {
+        this.root = new Shape(maxShapes, maxKeys);
+    }
+
+    @Override
+    public Map<String, Object> newObject() {
+        return new ShapedMap(root);
+    }
+
+    @Override
+    public List<Object> newArray() {
+        return new ArrayList<Object>();
+    }
+
+}
@@ -18,6 +18,7 @@ package nl.ctrlaltdev.json.transform.visitor;
 import java.util.List;
 import java.util.Map;
 
+import nl.ctrlaltdev.json.transform.parse.RawJson;
 import nl.ctrlaltdev.json.transform.path.ValuePath;
 import nl.ctrlaltdev.json.transform.util.NodeUtils;
 
@@ -78,8 +79,16 @@ public class AbstractVisitor {
         }
     }
 
+    /**
+     * @param node a node.
+     * @return the node to visit in its place, by default a RawJson is only unwrapped once decoded.
+     */
+    protected Object resolve(Object node) {
+        return RawJson.resolve(node);
+    }
+
     public Object visit(Object node, ValuePathVisitor v, Object targetNode) {
-        ValuePath source = new ValuePath(node);
+        ValuePath source = new ValuePath(resolve(node));
         ValuePath target = new ValuePath(targetNode);
         v.onBeginTransform(source, target);
         this.doVisit(v, source, target);
@@ -108,9 +117,11 @@ public class AbstractVisitor {
     private void visitArray(ValuePathVisitor v, ValuePath source, ValuePath target) {
         if (v.onBeginArray(source, target)) {
             List<Object> array = NodeUtils.toArray(source.value());
-            for (Object value : array) {
-                ValuePath nextSource = source.enter(source.path().enter(indexOf(array, value)), value);
-                ValuePath nextTarget = target.enter(target.path().enter(indexOf(array, value)), null);
+            for (Object element : array) {
+                int index = indexOf(array, element);
+                Object value = resolve(element);
+                ValuePath nextSource = source.enter(source.path().enter(index), value);
+                ValuePath nextTarget = target.enter(target.path().enter(index), null);
                 doVisit(v, nextSource, nextTarget);
             }
         }
@@ -135,7 +146,7 @@ public class AbstractVisitor {
     private void visitObject(ValuePathVisitor v, ValuePath source, ValuePath target) {
         if (v.onBeginObject(source, target)) {
             for (Map.Entry<String, Object> elem : NodeUtils.toObject(source.value()).entrySet()) {
-                ValuePath nextSource = source.enter(source.path().enter(elem.getKey()), elem.getValue());
+                ValuePath nextSource = source.enter(source.path().enter(elem.getKey()), resolve(elem.getValue()));
                 ValuePath nextTarget = target.enter(target.path().enter(elem.getKey()), null);
                 doVisit(v, nextSource, nextTarget);
             }
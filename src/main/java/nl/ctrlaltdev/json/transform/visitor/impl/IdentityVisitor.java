@@ -16,6 +16,7 @@
 package nl.ctrlaltdev.json.transform.visitor.impl;
 
 import nl.ctrlaltdev.json.transform.path.ValuePath;
+import nl.ctrlaltdev.json.transform.util.NodeFactory;
 import nl.ctrlaltdev.json.transform.util.NodeUtils;
 import nl.ctrlaltdev.json.transform.visitor.AbstractVisitor.ValuePathVisitor;
 
@@ -25,6 +26,16 @@ import nl.ctrlaltdev.json.transform.visitor.AbstractVisitor.ValuePathVisitor;
  */
 public class IdentityVisitor implements ValuePathVisitor {
 
+    private final NodeFactory factory;
+
+    public IdentityVisitor() {
+        this(NodeUtils.getNodeFactory());
+    }
+
+    public IdentityVisitor(NodeFactory factory) {
+        this.factory = factory;
+    }
+
     @Override
     public void onBeginTransform(ValuePath source, ValuePath target) {
         // Nop
@@ -37,7 +48,7 @@ public class IdentityVisitor implements ValuePathVisitor {
 
     @Override
     public boolean onBeginArray(ValuePath source, ValuePath target) {
-        target.set(NodeUtils.newArray());
+        target.set(factory.newArray());
         return true;
     }
 
@@ -48,7 +59,7 @@ public class IdentityVisitor implements ValuePathVisitor {
 
     @Override
     public boolean onBeginObject(ValuePath source, ValuePath target) {
-        target.set(NodeUtils.newObject());
+        target.set(factory.newObject());
         return true;
     }
 
@@ -16,12 +16,24 @@
 package nl.ctrlaltdev.json.transform.visitor.impl;
 
 import nl.ctrlaltdev.json.transform.merge.MergeStrategyException;
+import nl.ctrlaltdev.json.transform.parse.RawJson;
 import nl.ctrlaltdev.json.transform.path.ValuePath;
+import nl.ctrlaltdev.json.transform.util.NodeFactory;
 import nl.ctrlaltdev.json.transform.util.NodeUtils;
 import nl.ctrlaltdev.json.transform.visitor.AbstractVisitor.ValuePathVisitor;
 
 public final class MergeVisitor implements ValuePathVisitor {
 
+    private final NodeFactory factory;
+
+    public MergeVisitor() {
+        this(NodeUtils.getNodeFactory());
+    }
+
+    public MergeVisitor(NodeFactory factory) {
+        this.factory = factory;
+    }
+
     @Override
     public void onBeginTransform(ValuePath source, ValuePath target) {
         // Nop
@@ -34,9 +46,9 @@ public final class MergeVisitor implements ValuePathVisitor {
 
     @Override
     public boolean onBeginArray(ValuePath source, ValuePath target) {
-        Object currentValue = target.get();
+        Object currentValue = RawJson.decode(target.get());
         if (NodeUtils.isNull(currentValue)) {
-            target.set(NodeUtils.newArray());
+            target.set(factory.newArray());
         } else if (!NodeUtils.isArray(currentValue)) {
             throw new MergeStrategyException(target.path());
         }
@@ -50,9 +62,9 @@ public final class MergeVisitor implements ValuePathVisitor {
 
     @Override
     public boolean onBeginObject(ValuePath source, ValuePath target) {
-        Object currentValue = target.get();
+        Object currentValue = RawJson.decode(target.get());
         if (NodeUtils.isNull(currentValue)) {
-            target.set(NodeUtils.newObject());
+            target.set(factory.newObject());
         } else if (!NodeUtils.isObject(currentValue)) {
             throw new MergeStrategyException(target.path());
         }
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+/**
+ * finds bytes with the vector API when the jdk.incubator.vector module is added to the runtime,
+ * for example with --add-modules jdk.incubator.vector. Without it the SWAR scanner is used.
+ * Setting the system property nl.ctrlaltdev.json.vector to false disables it as well.
+ * Only the scan of strings for a quote or backslash is vectorized, structural characters are classified one byte at a time.
+ */
+final class ByteVectors {
+
+    static final boolean AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+            && !"false".equals(System.getProperty("nl.ctrlaltdev.json.vector"));
+
+    private ByteVectors() {
+    }
+
+    /**
+     * moves to the first quote or backslash, a vector at a time.
+     * @param bytes the bytes.
+     * @param pos the start.
+     * @param limit the end.
+     * @return the position of the first quote or backslash, or the position from which less than a vector
+     * remains. The sign bit is set if a non-ASCII byte was passed.
+     */
+    static int skipToQuoteOrBackslash(byte[] bytes, int pos, int limit) {
+        return VectorScanner.skipToQuoteOrBackslash(bytes, pos, limit);
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * classifies 32 or 64 bytes per instruction, depending on the preferred vector size of the platform.
+ * Only loaded when the jdk.incubator.vector module is present.
+ */
+final class VectorScanner {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private VectorScanner() {
+    }
+
+    static int skipToQuoteOrBackslash(byte[] bytes, int pos, int limit) {
+        int nonAscii = 0;
+        int last = limit - SPECIES.length();
+        while (pos <= last) {
+            ByteVector v = ByteVector.fromArray(SPECIES, bytes, pos);
+            VectorMask<Byte> found = v.eq((byte) '"').or(v.eq((byte) '\\'));
+            VectorMask<Byte> high = v.lt((byte) 0);
+            if (found.anyTrue()) {
+                int first = found.firstTrue();
+                if (high.firstTrue() < first) {
+                    nonAscii = Integer.MIN_VALUE;
+                }
+                return (pos + first) | nonAscii;
+            }
+            if (high.anyTrue()) {
+                nonAscii = Integer.MIN_VALUE;
+            }
+            pos += SPECIES.length();
+        }
+        return pos | nonAscii;
+    }
+
+}
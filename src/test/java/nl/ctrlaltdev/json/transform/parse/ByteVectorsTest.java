@@ -0,0 +1,40 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * only runs in the test-java21-vector execution, which sets nl.ctrlaltdev.json.vector.expected.
+ */
+public class ByteVectorsTest {
+
+    @Test
+    public void shouldUseTheVectorApiWhenTheModuleIsAdded() {
+        assumeTrue(Boolean.getBoolean("nl.ctrlaltdev.json.vector.expected"));
+        assertTrue(ByteVectors.AVAILABLE);
+        byte[] bytes = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef\"0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef"
+                .getBytes(StandardCharsets.UTF_8);
+        assertEquals(64, ByteVectors.skipToQuoteOrBackslash(bytes, 0, bytes.length));
+    }
+
+}
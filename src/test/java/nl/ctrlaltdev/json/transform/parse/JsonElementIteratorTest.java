@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import nl.ctrlaltdev.json.transform.path.Path;
+import nl.ctrlaltdev.json.transform.select.jsonpath.JsonPathTokenizer.JsonPathParseException;
+
+import org.junit.Test;
+
+public class JsonElementIteratorTest {
+
+    private static final String DOCUMENT = "{\"meta\":{\"items\":[0]},\"items\":[{\"a\":1},[2,{\"b\":3}],\"x\",null],\"tail\":{\"items\":[4]}}";
+
+    @Test
+    public void shouldIterateArrayElements() {
+        JsonElementIterator it = new JsonParser().elements("$.items[*]", new StringReader(DOCUMENT));
+        List<String> results = new ArrayList<String>();
+        while (it.hasNext()) {
+            Object element = it.next();
+            results.add(it.getPath() + "=" + element);
+        }
+        assertEquals("[items[0]={a=1}, items[1]=[2, {b=3}], items[2]=x, items[3]=null]", results.toString());
+    }
+
+    @Test
+    public void shouldMatchNestedPaths() {
+        byte[] bytes = DOCUMENT.getBytes(StandardCharsets.UTF_8);
+        JsonElementIterator it = new JsonParser().elements("*.items[0]", new ByteArrayInputStream(bytes));
+        assertEquals("[0, 4]", String.valueOf(it.stream().collect(Collectors.toList())));
+        it = new JsonParser().elements("$.items[1][1].b", new ByteArrayInputStream(bytes));
+        assertEquals(3, it.next());
+        assertEquals("items[1][1].b", it.getPath().toString());
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void shouldIterateConcretePath() {
+        JsonParser parser = new JsonParser();
+        JsonElementIterator it = new JsonElementIterator(parser, new JsonTokenizer().tokens(DOCUMENT), Path.fromString("tail"));
+        assertEquals("{items=[4]}", String.valueOf(it.next()));
+        assertFalse(it.hasNext());
+        it = new JsonElementIterator(parser, new JsonTokenizer().tokens(DOCUMENT), Path.root());
+        assertEquals(parser.parse(DOCUMENT), it.next());
+    }
+
+    @Test(expected = JsonPathParseException.class)
+    public void shouldRejectComplexPaths() {
+        new JsonParser().elements("$..items", new StringReader(DOCUMENT));
+    }
+
+}
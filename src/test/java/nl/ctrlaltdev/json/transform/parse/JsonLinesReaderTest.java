@@ -0,0 +1,143 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.ParserException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JsonLinesReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String LINES = "{\"a\":1}\r\n\n  \n[2,3]\n\"é\"\n4";
+
+    @Test
+    public void shouldReadLinesFromStream() throws IOException {
+        JsonLinesReader reader = new JsonParser().lines(new ByteArrayInputStream(LINES.getBytes(StandardCharsets.UTF_8)));
+        assertEquals("{a=1}", String.valueOf(reader.next()));
+        assertEquals(1, reader.getLine());
+        assertEquals(0, reader.getOffset());
+        assertEquals("[2, 3]", String.valueOf(reader.next()));
+        assertEquals(4, reader.getLine());
+        assertEquals(13, reader.getOffset());
+        assertEquals("é", reader.next());
+        assertEquals(19, reader.getOffset());
+        assertEquals(4, reader.next());
+        assertEquals(6, reader.getLine());
+        assertEquals(24, reader.getOffset());
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    public void shouldStreamLinesFromReader() {
+        try (Stream<Object> stream = new JsonParser().lines(new StringReader(LINES)).stream()) {
+            assertEquals("[{a=1}, [2, 3], é, 4]", String.valueOf(stream.collect(Collectors.toList())));
+        }
+    }
+
+    @Test
+    public void shouldReadNullRecords() throws IOException {
+        String lines = "1\nnull\n2\n null \nnull";
+        JsonLinesReader reader = new JsonParser().lines(new StringReader(lines));
+        List<Object> records = new ArrayList<Object>();
+        while (reader.hasNext()) {
+            records.add(reader.next());
+        }
+        assertEquals(Arrays.asList(1, null, 2, null, null), records);
+        assertEquals(5, reader.getLine());
+        try (Stream<Object> stream = new JsonParser().lines(new StringReader(lines)).stream()) {
+            assertEquals(5, stream.count());
+        }
+    }
+
+    @Test
+    public void shouldSkipLinesThatOnlyHoldWhitespace() {
+        String lines = "1\n\f\n \u2003\t\r\n2";
+        try (Stream<Object> stream = new JsonParser().lines(new StringReader(lines)).stream()) {
+            assertEquals(Arrays.asList(1, 2), stream.collect(Collectors.toList()));
+        }
+        try (Stream<Object> stream = new JsonParser().lines(new ByteArrayInputStream(lines.getBytes(StandardCharsets.UTF_8))).stream()) {
+            assertEquals(Arrays.asList(1, 2), stream.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void shouldReadLongLines() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int t = 0; t < 100000; t++) {
+            sb.append((char) ('a' + t % 26));
+        }
+        String line = "[\"" + sb + "\"]\n";
+        JsonLinesReader reader = new JsonParser().lines(new StringReader(line + line + line));
+        int count = 0;
+        while (reader.hasNext()) {
+            assertEquals(Arrays.asList(sb.toString()), reader.next());
+            count++;
+        }
+        assertEquals(3, count);
+        assertEquals(2L * line.length(), reader.getOffset());
+    }
+
+    @Test
+    public void shouldReportAndSkipInvalidRecords() throws IOException {
+        File file = folder.newFile("events.ndjson");
+        Files.write(file.toPath(), "{\"a\":1}\n{\"a\":\n{\"a\":2} 3\n{\"a\":4}\n".getBytes(StandardCharsets.UTF_8));
+        final List<String> errors = new ArrayList<String>();
+        List<Object> records = new ArrayList<Object>();
+        try (JsonLinesReader reader = new JsonParser().lines(file.toPath())) {
+            reader.setErrorListener(new JsonLinesReader.ErrorListener() {
+                @Override
+                public void onError(long line, long offset, RuntimeException error) {
+                    assertTrue(error instanceof ParserException);
+                    errors.add(line + ":" + offset);
+                }
+            });
+            while (reader.hasNext()) {
+                records.add(reader.next());
+            }
+        }
+        assertEquals("[{a=1}, {a=4}]", String.valueOf(records));
+        assertEquals("[2:8, 3:14]", String.valueOf(errors));
+    }
+
+    @Test(expected = ParserException.class)
+    public void shouldFailOnInvalidRecords() {
+        JsonLinesReader reader = new JsonParser().lines(new StringReader("{\"a\":1}\n{\"a\":\n"));
+        reader.next();
+        reader.next();
+    }
+
+}
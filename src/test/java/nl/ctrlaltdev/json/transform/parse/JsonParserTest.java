@@ -16,13 +16,46 @@
 package nl.ctrlaltdev.json.transform.parse;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
 import nl.ctrlaltdev.json.transform.parse.JsonParser;
+import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.NumberMode;
+import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.ParserException;
+import nl.ctrlaltdev.json.transform.print.JsonPrinter;
+import nl.ctrlaltdev.json.transform.util.NodeUtils;
+import nl.ctrlaltdev.json.transform.util.OrderedNodeFactory;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class JsonParserTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private JsonParser parser;
 
     @Before
@@ -72,4 +105,369 @@ public class JsonParserTest {
         assertEquals("{a={b=c}}", String.valueOf(results));
     }
 
+    @Test
+    public void shouldParseEscapesAndEmptyStrings() {
+        Object results = parser.parse("{\"a\":\"\",\"b\":\"x\\ty\\u0041\"}");
+        assertEquals("{a=, b=x\tyA}", String.valueOf(results));
+    }
+
+    @Test(expected = ParserException.class)
+    public void shouldFailOnUnterminatedDocument() {
+        parser.parse("{\"a\":[1,2");
+    }
+
+    @Test
+    public void shouldRejectTrailingContent() throws IOException {
+        for (String document : Arrays.asList("{} x", "[1]]", "{\"a\":1}}", "1 2", "\"a\" \"b\"", "[1] [2]")) {
+            byte[] bytes = document.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes).flip();
+            assertRejected(document, new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return parser.parse(document);
+                }
+            });
+            assertRejected(document, new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return parser.parse(bytes);
+                }
+            });
+            assertRejected(document, new Callable<Object>() {
+                @Override
+                public Object call() throws IOException {
+                    return parser.parse(new ByteArrayInputStream(bytes));
+                }
+            });
+            assertRejected(document, new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return parser.parse(direct);
+                }
+            });
+            assertRejected(document, new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return parser.parseParallel(bytes);
+                }
+            });
+        }
+        assertEquals("[1]", String.valueOf(parser.parse(" [1] \n")));
+        assertEquals(1, parser.parseParallel("1 ".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void assertRejected(String document, Callable<Object> parse) {
+        try {
+            fail(document + " parsed as " + parse.call());
+        } catch (ParserException ex) {
+            // expected
+        } catch (Exception ex) {
+            throw new AssertionError(ex);
+        }
+    }
+
+    @Test
+    public void shouldParseAcrossBufferBoundaries() throws IOException {
+        StringBuilder sb = new StringBuilder("[");
+        for (int t = 0; t < 2000; t++) {
+            sb.append("{\"key\":\"value\\n").append(t).append("\",\"number\":").append(t).append("},");
+        }
+        sb.append("12345]");
+        String document = sb.toString();
+        Reader slow = new FilterReader(new StringReader(document)) {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                return super.read(cbuf, off, Math.min(len, 7));
+            }
+        };
+        assertEquals(String.valueOf(parser.parse(document)), String.valueOf(parser.parse(slow)));
+    }
+
+    @Test
+    public void shouldParseUtf8Bytes() {
+        String document = "{\"caf\u00e9\":[\"\u20ac 1\",\"\\ud83d\\ude00\",\"plain\",-12,3.5,null]}";
+        byte[] bytes = document.getBytes(StandardCharsets.UTF_8);
+        String expected = "{caf\u00e9=[\u20ac 1, \ud83d\ude00, plain, -12, 3.5, null]}";
+        assertEquals(expected, String.valueOf(parser.parse(bytes)));
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        assertEquals(expected, String.valueOf(parser.parse(direct)));
+        assertEquals(0, direct.position());
+    }
+
+    @Test
+    public void shouldParseUtf8StreamAcrossBufferBoundaries() throws IOException {
+        StringBuilder sb = new StringBuilder("[");
+        for (int t = 0; t < 5000; t++) {
+            sb.append("{\"k\u00eby\":\"v\u00e4lue\\n").append(t).append("\",\"number\":").append(t).append("},");
+        }
+        sb.append("true]");
+        String document = sb.toString();
+        InputStream slow = new FilterInputStream(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8))) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 5));
+            }
+        };
+        assertEquals(String.valueOf(parser.parse(document)), String.valueOf(parser.parse(slow)));
+    }
+
+    @Test
+    public void shouldSkipTheSameWhitespaceInCharsAndBytes() throws IOException {
+        JsonParser projected = new JsonParser(Projection.of(nl.ctrlaltdev.json.transform.path.Path.fromString("b")));
+        for (char c : new char[] { '\u000b', '\u001c', '\u001f', '\b', '\u2028', '\u3000' }) {
+            String ws = String.valueOf(c);
+            String document = ws + "{" + ws + "\"a\"" + ws + ":" + ws + "[1" + ws + "," + ws + "true" + ws + "]" + ws
+                    + "," + ws + "\"b\":null" + ws + "}" + ws;
+            byte[] bytes = document.getBytes(StandardCharsets.UTF_8);
+            Object expected = parser.parse(document);
+            assertEquals("{a=[1, true], b=null}", String.valueOf(expected));
+            assertEquals(expected, parser.parse(bytes));
+            InputStream bytewise = new FilterInputStream(new ByteArrayInputStream(bytes)) {
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    return super.read(b, off, 1);
+                }
+            };
+            assertEquals(expected, parser.parse(bytewise));
+            assertEquals("{b=null}", String.valueOf(projected.parse(bytes)));
+            assertEquals(projected.parse(document), projected.parse(bytes));
+            if (c < 128) {
+                assertEquals(expected, parser.parseLazy(bytes));
+                assertEquals("[1, true]", String.valueOf(parser.parseParallel((ws + "[1" + ws + "," + ws + "true" + ws + "]" + ws).getBytes(StandardCharsets.UTF_8))));
+            }
+        }
+        for (String document : Arrays.asList("[1\u00a0]", "[1\u00e9]", "[\u00e9]", "[\u2027]")) {
+            assertRejected(document, new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return parser.parse(document);
+                }
+            });
+            assertRejected(document, new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return parser.parse(document.getBytes(StandardCharsets.UTF_8));
+                }
+            });
+        }
+    }
+
+    @Test
+    public void shouldParseMappedFile() throws IOException {
+        File file = folder.newFile("mapped.json");
+        Files.write(file.toPath(), "{\"a\":[1,\"b\"]}".getBytes(StandardCharsets.UTF_8));
+        assertEquals("{a=[1, b]}", String.valueOf(parser.parse(file.toPath())));
+    }
+
+    @Test
+    public void shouldUseNodeFactory() {
+        Object results = new JsonParser(new OrderedNodeFactory()).parse("{\"b\":1,\"a\":{\"d\":2,\"c\":3}}");
+        assertEquals("{b=1, a={d=2, c=3}}", String.valueOf(results));
+        assertEquals("{a={c=3, d=2}, b=1}", String.valueOf(parser.parse("{\"b\":1,\"a\":{\"d\":2,\"c\":3}}")));
+    }
+
+    @Test
+    public void shouldShareRepeatedPropertyNames() {
+        String document = "[{\"name\":1},{\"name\":2}]";
+        List<Object> fromString = NodeUtils.toArray(parser.parse(document));
+        assertSame(firstKey(fromString.get(0)), firstKey(fromString.get(1)));
+        List<Object> fromBytes = NodeUtils.toArray(parser.parse(document.getBytes(StandardCharsets.UTF_8)));
+        assertSame(firstKey(fromBytes.get(0)), firstKey(fromBytes.get(1)));
+        List<Object> uncached = NodeUtils.toArray(new JsonParser(new JsonTokenizer(0)).parse(document));
+        assertNotSame(firstKey(uncached.get(0)), firstKey(uncached.get(1)));
+    }
+
+    private String firstKey(Object object) {
+        return NodeUtils.toObject(object).keySet().iterator().next();
+    }
+
+    @Test
+    public void shouldParseNumbers() {
+        Object results = parser.parse("[1,-2147483648,9999999999,12345678901,-1.5,1e3,2E-2]");
+        assertEquals("[1, -2147483648, 9999999999, 12345678901, -1.5, 1000.0, 0.02]", String.valueOf(results));
+        List<Object> values = NodeUtils.toArray(results);
+        assertEquals(Integer.class, values.get(1).getClass());
+        assertEquals(Long.class, values.get(2).getClass());
+        assertEquals(Long.class, values.get(3).getClass());
+    }
+
+    @Test
+    public void shouldParseLazyNumbers() {
+        JsonParser lazy = new JsonParser(new JsonTokenizer(NumberMode.LAZY));
+        String document = "[42,123456789012345678901234567890,0.10000000000000000000001,-1.5e300]";
+        List<Object> values = NodeUtils.toArray(lazy.parse(document));
+        JsonNumber big = (JsonNumber) values.get(1);
+        assertEquals(new BigInteger("123456789012345678901234567890"), big.bigIntegerValue());
+        assertEquals(new BigDecimal("0.10000000000000000000001"), ((JsonNumber) values.get(2)).bigDecimalValue());
+        assertEquals(42, ((Number) values.get(0)).intValue());
+        assertEquals(-1.5e300, ((Number) values.get(3)).doubleValue(), 0.0);
+        assertEquals(document, new JsonPrinter().toString(values));
+    }
+
+    @Test
+    public void shouldKeepLazyLongsAroundTheLimits() {
+        JsonParser lazy = new JsonParser(new JsonTokenizer(NumberMode.LAZY));
+        String document = "[1234567890123456789,9223372036854775807,-9223372036854775808,9223372036854775808,-9223372036854775809]";
+        List<Object> values = NodeUtils.toArray(lazy.parse(document));
+        assertEquals(1234567890123456789L, ((Number) values.get(0)).longValue());
+        assertEquals(Long.MAX_VALUE, ((Number) values.get(1)).longValue());
+        assertEquals(Long.MIN_VALUE, ((Number) values.get(2)).longValue());
+        assertEquals(Long.MAX_VALUE, ((Number) values.get(3)).longValue());
+        assertEquals(Long.MIN_VALUE, ((Number) values.get(4)).longValue());
+        assertEquals(9.223372036854775808e18, ((Number) values.get(3)).doubleValue(), 0.0);
+        List<Object> defaults = NodeUtils.toArray(parser.parse("[1234567890123456789,9223372036854775807,-9223372036854775808]"));
+        for (int t = 0; t < defaults.size(); t++) {
+            assertEquals(((Number) defaults.get(t)).longValue(), ((Number) values.get(t)).longValue());
+        }
+    }
+
+    @Test
+    public void shouldHandIntegersToAnOverriddenParseNumber() {
+        JsonTokenizer custom = new JsonTokenizer() {
+            @Override
+            protected Number parseNumber(String value) {
+                return new BigDecimal(value);
+            }
+        };
+        String document = "[1,-42,1.5]";
+        assertEquals(Arrays.asList(new BigDecimal("1"), new BigDecimal("-42"), new BigDecimal("1.5")), new JsonParser(custom).parse(document));
+        assertEquals(Arrays.asList(new BigDecimal("1"), new BigDecimal("-42"), new BigDecimal("1.5")),
+                new JsonParser(custom).parse(document.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Arrays.asList(1, -42, 1.5), parser.parse(document));
+    }
+
+    @Test(expected = ParserException.class)
+    public void shouldRejectInvalidLazyNumbers() {
+        new JsonParser(new JsonTokenizer(NumberMode.LAZY)).parse("[1.]");
+    }
+
+    @Test
+    public void shouldParseArrayInParallel() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int t = 0; t < 20000; t++) {
+            sb.append(t == 0 ? "" : ",").append("{\"id\":").append(t).append(",\"text\":\"a,]\\\"}[\",\"list\":[").append(t).append(",{}]}");
+        }
+        byte[] document = sb.append("] ").toString().getBytes(StandardCharsets.UTF_8);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Object results = parser.parseParallel(document, pool);
+            assertEquals(parser.parse(document), results);
+            assertEquals(20000, NodeUtils.toArray(results).size());
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals("[]", String.valueOf(parser.parseParallel(" [ ] ".getBytes(StandardCharsets.UTF_8))));
+        assertEquals("[1]", String.valueOf(parser.parseParallel("[1]".getBytes(StandardCharsets.UTF_8))));
+        assertEquals("{a=1}", String.valueOf(parser.parseParallel("{\"a\":1}".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    public void shouldRejectInvalidParallelArrays() {
+        String[] documents = { "[1,,2]", "[1 2]", "[1,2", "[\"a]", "[1,2}", "[1] 2" };
+        String[] messages = { "Expected a value at 3", "Unexpected content at 4", "Unexpected end of document at 4",
+                "Unterminated string at 4", "Unexpected } at 4", "Unexpected content after the array at 4" };
+        for (int t = 0; t < documents.length; t++) {
+            try {
+                parser.parseParallel(documents[t].getBytes(StandardCharsets.UTF_8));
+                fail(documents[t]);
+            } catch (ParserException ex) {
+                assertEquals(messages[t], ex.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void shouldParseFileInParallel() throws IOException {
+        StringBuilder sb = new StringBuilder(" [");
+        for (int t = 0; t < 50000; t++) {
+            sb.append(t == 0 ? "" : ",\n").append("{\"id\":").append(t).append(",\"text\":\"a,]\\\"}[\u20ac\",\"list\":[").append(t).append(",{}]}");
+        }
+        byte[] document = sb.append("] ").toString().getBytes(StandardCharsets.UTF_8);
+        File file = folder.newFile("parallel.json");
+        Files.write(file.toPath(), document);
+        Object expected = parser.parse(document);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(expected, parser.parseParallel(file.toPath(), pool));
+            try (FileChannel channel = FileChannel.open(file.toPath())) {
+                // small regions and ranges, so elements and escapes straddle both
+                assertEquals(expected, new ParallelFileParser(parser, channel, 100, 1000).parse(pool));
+            }
+        } finally {
+            pool.shutdown();
+        }
+        String[] documents = { " [ ] ", "[1]", "{\"a\":1}" };
+        String[] results = { "[]", "[1]", "{a=1}" };
+        for (int t = 0; t < documents.length; t++) {
+            Files.write(file.toPath(), documents[t].getBytes(StandardCharsets.UTF_8));
+            assertEquals(results[t], String.valueOf(parser.parseParallel(file.toPath())));
+        }
+    }
+
+    @Test
+    public void shouldRejectInvalidParallelFiles() throws IOException {
+        String[] documents = { "[1,,2]", "[1 2]", "[1,2", "[\"a]", "[1,2}", "[1] 2", "[1,]", "{} x", "" };
+        String[] messages = { "Expected a value at 5", "Unexpected content at 4", "Unexpected end of document at 4",
+                "Unterminated string at 4", "Unexpected } at 4", "Unexpected content after the array at 4",
+                "Expected a value at 3", "Unexpected VALUE after the document at 4", "Unexpected end of document at 0" };
+        File file = folder.newFile("invalid.json");
+        for (int t = 0; t < documents.length; t++) {
+            Files.write(file.toPath(), documents[t].getBytes(StandardCharsets.UTF_8));
+            for (long chunk : new long[] { 1, 1 << 20 }) {
+                try (FileChannel channel = FileChannel.open(file.toPath())) {
+                    new ParallelFileParser(parser, channel, 2, chunk).parse(ForkJoinPool.commonPool());
+                    fail(documents[t]);
+                } catch (ParserException ex) {
+                    assertEquals(documents[t] + " " + chunk, messages[t], ex.getMessage());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldScanStringsAtAnyOffset() throws IOException {
+        String[] bodies = { "plain ascii text", "with \\\"escapes\\\" and \\\\", "caf\u00e9 \u20ac and more", "12345678\\n12345678" };
+        for (String body : bodies) {
+            for (int t = 0; t < 17; t++) {
+                StringBuilder sb = new StringBuilder("[");
+                for (int s = 0; s < t; s++) {
+                    sb.append(' ');
+                }
+                String document = sb.append("\"").append("xxxxxxxxxxxxxxxx".substring(0, t)).append("\",\"")
+                        .append(body).append("\",   \n        {\"").append(body).append("\":1}]").toString();
+                Object expected = parser.parse(document);
+                assertEquals(expected, parser.parse(document.getBytes(StandardCharsets.UTF_8)));
+                assertEquals(expected, parser.parse(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8))));
+            }
+        }
+    }
+
+    @Test
+    public void shouldPoolTokenSources() throws IOException {
+        JsonTokenizer tokenizer = new JsonTokenizer();
+        byte[] document = "{\"a\":[1,\"\\u00e9\"]}".getBytes(StandardCharsets.UTF_8);
+        Utf8TokenSource source = TokenSourcePool.bytes(tokenizer, document, 0, document.length);
+        assertNotSame(source, TokenSourcePool.bytes(tokenizer, document, 0, document.length));
+        TokenSourcePool.release(source);
+        assertSame(source, TokenSourcePool.bytes(new JsonTokenizer(), document, 0, document.length));
+        assertEquals("{a=[1, \u00e9]}", String.valueOf(new JsonParser().build(source)));
+        TokenSourcePool.release(source);
+        assertNotSame(source, TokenSourcePool.bytes(new JsonTokenizer(NumberMode.LAZY), document, 0, document.length));
+
+        StringBuilder large = new StringBuilder("\"");
+        for (int t = 0; t < TokenSourcePool.MAX_RETAINED; t++) {
+            large.append("\\n");
+        }
+        CharTokenSource chars = TokenSourcePool.chars(tokenizer, null, large.append('"').toString());
+        assertEquals(TokenSourcePool.MAX_RETAINED, ((String) new JsonParser().build(chars)).length());
+        TokenSourcePool.release(chars);
+        assertNotSame(chars, TokenSourcePool.chars(tokenizer, null, "1"));
+
+        assertEquals("[1, 2]", String.valueOf(parser.parse(new StringReader("[1,2]"))));
+        assertEquals("[3]", String.valueOf(parser.parse(new ByteArrayInputStream("[3]".getBytes(StandardCharsets.UTF_8)))));
+        assertEquals("[4]", String.valueOf(parser.parse(ByteBuffer.wrap(" [4] ".getBytes(StandardCharsets.UTF_8), 1, 3))));
+    }
+
 }
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.ParserException;
+import nl.ctrlaltdev.json.transform.path.Path;
+
+import org.junit.Test;
+
+public class JsonPushParserTest {
+
+    private static final String DOCUMENT = "{\"meta\":{\"items\":[0]},\"items\":[{\"a\":1},[2,{\"b\":3}],\"x\",null],\"tail\":{\"items\":[4]}}";
+
+    private final List<String> results = new ArrayList<String>();
+
+    private final JsonPushParser.Listener listener = new JsonPushParser.Listener() {
+        @Override
+        public void onValue(Path path, Object value) {
+            results.add(path + "=" + value);
+        }
+    };
+
+    @Test
+    public void shouldParseDocumentsFromPipe() throws IOException {
+        JsonPushParser parser = new JsonParser().push(listener);
+        Pipe pipe = Pipe.open();
+        pipe.source().configureBlocking(false);
+        byte[] input = "{\"a\":[1,2.5,true],\"b\":\"café \\u20ac\\n\"} [null]\n\"x\" 42".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer chunk = ByteBuffer.allocate(64);
+        for (int t = 0; t < input.length; t += 3) {
+            pipe.sink().write(ByteBuffer.wrap(input, t, Math.min(3, input.length - t)));
+            chunk.clear();
+            while (pipe.source().read(chunk) > 0) {
+                chunk.flip();
+                parser.feed(chunk);
+                chunk.clear();
+            }
+        }
+        assertEquals(3, results.size());
+        parser.endOfInput();
+        assertEquals("[={a=[1, 2.5, true], b=café €\n}, =[null], =x, =42]", results.toString());
+        assertTrue(parser.isComplete());
+        assertEquals(input.length, parser.getPosition());
+    }
+
+    @Test
+    public void shouldSplitAtEveryByte() {
+        String document = "{\"name\":\"\\u00e9\\\"é€😀\",\"list\":[-1,1e3,{}],\"x\":false}";
+        byte[] input = document.getBytes(StandardCharsets.UTF_8);
+        JsonPushParser parser = new JsonParser().push(listener);
+        ByteBuffer direct = ByteBuffer.allocateDirect(1);
+        for (byte b : input) {
+            direct.clear();
+            direct.put(b).flip();
+            parser.feed(direct);
+        }
+        parser.endOfInput();
+        assertEquals(1, results.size());
+        assertEquals("=" + new JsonParser().parse(document), results.get(0));
+    }
+
+    @Test
+    public void shouldEmitElements() {
+        JsonPushParser parser = new JsonParser().push("$.items[*]", listener);
+        byte[] input = DOCUMENT.getBytes(StandardCharsets.UTF_8);
+        parser.feed(input, 0, 40);
+        assertEquals("[items[0]={a=1}]", results.toString());
+        parser.feed(input, 40, input.length - 40);
+        parser.endOfInput();
+        assertEquals("[items[0]={a=1}, items[1]=[2, {b=3}], items[2]=x, items[3]=null]", results.toString());
+
+        results.clear();
+        parser = new JsonParser().push("*.items[0]", listener);
+        parser.feed(input, 0, input.length);
+        assertEquals("[meta.items[0]=0, tail.items[0]=4]", results.toString());
+    }
+
+    @Test
+    public void shouldRejectInvalidInput() {
+        JsonPushParser parser = new JsonParser().push(listener);
+        parser.feed(ByteBuffer.wrap("{\"a\":\"unterminated".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(parser.isComplete());
+        try {
+            parser.endOfInput();
+            fail();
+        } catch (ParserException ex) {
+            assertEquals("Unterminated string at 18", ex.getMessage());
+        }
+        try {
+            new JsonParser().push(listener).feed(ByteBuffer.wrap("[1}".getBytes(StandardCharsets.UTF_8)));
+            fail();
+        } catch (ParserException ex) {
+            assertEquals("Unexpected } at 2", ex.getMessage());
+        }
+        try {
+            new JsonParser().push(listener).feed(ByteBuffer.wrap("{1:2}".getBytes(StandardCharsets.UTF_8)));
+            fail();
+        } catch (ParserException ex) {
+            assertEquals("Expected a name, not a value at 1", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void shouldSkipTheWhitespaceOfThePullParser() {
+        String document = "\u000b{\u001c\"a\"\b:\u000b[1\u001f,true\u000b]}\u000b";
+        JsonPushParser parser = new JsonParser().push(listener);
+        parser.feed(ByteBuffer.wrap(document.getBytes(StandardCharsets.UTF_8)));
+        parser.endOfInput();
+        assertEquals("[=" + new JsonParser().parse(document) + "]", results.toString());
+    }
+
+    @Test
+    public void shouldRejectMalformedObjects() {
+        String[][] cases = {
+            { "{\"a\":1 \"b\":2}", "Expected a name at 7" },
+            { "{\"a\"}", "Expected a value at 4" },
+            { "{\"a\":}", "Expected a value at 5" },
+            { "{\"a\":1,\"b\"}", "Expected a value at 10" },
+            { "{\"a\" 1}", "Expected a name, not a value at 5" },
+            { "{\"a\" \"b\":1}", "Expected a colon at 5" },
+            { "{:1}", "Expected a name at 2" },
+            { "{\"x\":{:[]}}", "Expected a name at 7" },
+        };
+        for (String[] c : cases) {
+            for (JsonPushParser parser : new JsonPushParser[] { new JsonParser().push(listener), new JsonParser().push("$.x", listener) }) {
+                try {
+                    parser.feed(ByteBuffer.wrap(c[0].getBytes(StandardCharsets.UTF_8)));
+                    fail(c[0] + " " + results);
+                } catch (ParserException ex) {
+                    assertEquals(c[0], c[1], ex.getMessage());
+                }
+            }
+            try {
+                new JsonParser().parse(c[0]);
+                fail(c[0]);
+            } catch (RuntimeException ex) {
+                // the pull parser rejects the same documents
+            }
+        }
+        assertTrue(results.isEmpty());
+    }
+
+}
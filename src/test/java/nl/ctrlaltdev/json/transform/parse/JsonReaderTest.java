@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+
+import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.JsonTokenType;
+
+import org.junit.Test;
+
+public class JsonReaderTest {
+
+    @Test
+    public void shouldWalkDocument() throws IOException {
+        JsonReader reader = new JsonReader("{\"a\":{\"b\":[1,\"x\"]},\"c\":null}");
+        assertEquals(JsonTokenType.OBJECT_START, reader.nextToken());
+        assertNull(reader.currentName());
+        assertEquals(1, reader.getDepth());
+        assertEquals(JsonTokenType.NAME, reader.nextToken());
+        assertEquals("a", reader.currentName());
+        assertEquals(JsonTokenType.OBJECT_START, reader.nextToken());
+        assertEquals("a", reader.currentName());
+        assertEquals(2, reader.getDepth());
+        assertEquals(JsonTokenType.NAME, reader.nextToken());
+        assertEquals(JsonTokenType.ARRAY_START, reader.nextToken());
+        assertEquals("b", reader.currentName());
+        assertEquals(JsonTokenType.VALUE, reader.nextToken());
+        assertNull(reader.currentName());
+        assertEquals(Integer.valueOf(1), reader.currentValue());
+        assertEquals(JsonTokenType.VALUE, reader.nextToken());
+        assertEquals("x", reader.currentText().toString());
+        assertEquals(JsonTokenType.ARRAY_END, reader.nextToken());
+        assertEquals("b", reader.currentName());
+        assertEquals(JsonTokenType.OBJECT_END, reader.nextToken());
+        assertEquals("a", reader.currentName());
+        assertEquals(1, reader.getDepth());
+        assertEquals(JsonTokenType.NAME, reader.nextToken());
+        assertEquals("c", reader.currentName());
+        assertEquals(JsonTokenType.VALUE, reader.nextToken());
+        assertNull(reader.currentValue());
+        assertEquals(JsonTokenType.OBJECT_END, reader.nextToken());
+        assertNull(reader.nextToken());
+    }
+
+    @Test
+    public void shouldSkipChildren() throws IOException {
+        JsonReader reader = new JsonReader("{\"a\":{\"b\":[1,{\"c\":2}]},\"d\":true}");
+        reader.nextToken();
+        reader.nextToken();
+        assertEquals(JsonTokenType.OBJECT_START, reader.nextToken());
+        reader.skipChildren();
+        assertEquals(JsonTokenType.OBJECT_END, reader.currentToken());
+        assertEquals(1, reader.getDepth());
+        assertEquals(JsonTokenType.NAME, reader.nextToken());
+        assertEquals("d", reader.currentName());
+        assertEquals(JsonTokenType.VALUE, reader.nextToken());
+        assertEquals(Boolean.TRUE, reader.currentValue());
+    }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.ParserException;
+import nl.ctrlaltdev.json.transform.path.Path;
+import nl.ctrlaltdev.json.transform.select.SelectBuilder;
+import nl.ctrlaltdev.json.transform.util.NodeUtils;
+import nl.ctrlaltdev.json.transform.util.OrderedNodeFactory;
+
+import org.junit.Test;
+
+public class JsonTapeTest {
+
+    private static final String DOCUMENT = "{\"id\":7, \"name\":\"caf\\u00e9\", \"ключ\":\"значение\", \"esc\\\"aped\":true,"
+            + "\"items\":[{\"a\":1.5,\"b\":[]},null,\"x\",{}], \"big\":12345678901}";
+
+    private final JsonParser parser = new JsonParser();
+
+    @Test
+    public void shouldMatchFullParse() {
+        Object lazy = parser.parseLazy(DOCUMENT);
+        assertTrue(lazy instanceof TapeMap);
+        assertEquals(parser.parse(DOCUMENT), lazy);
+        assertEquals(lazy, parser.parse(DOCUMENT));
+        assertEquals(6, NodeUtils.toObject(lazy).size());
+    }
+
+    @Test
+    public void shouldDecodeOnAccess() {
+        Map<String, Object> root = NodeUtils.toObject(parser.parseLazy(DOCUMENT));
+        assertEquals(7, root.get("id"));
+        assertEquals("café", root.get("name"));
+        assertEquals("значение", root.get("ключ"));
+        assertEquals(Boolean.TRUE, root.get("esc\"aped"));
+        assertEquals(12345678901L, root.get("big"));
+        assertNull(root.get("missing"));
+        assertFalse(root.containsKey("missing"));
+        assertEquals(1.5, Path.fromString("items[0].a").get(root));
+        List<Object> items = NodeUtils.toArray(root.get("items"));
+        assertEquals(4, items.size());
+        assertNull(items.get(1));
+        assertEquals("x", items.get(2));
+        assertEquals(1, SelectBuilder.fromJsonPath("$.items[0].b").select(root).size());
+    }
+
+    @Test
+    public void shouldMaterializeOnModification() {
+        Map<String, Object> root = NodeUtils.toObject(parser.parseLazy(DOCUMENT));
+        List<Object> items = NodeUtils.toArray(root.get("items"));
+        items.remove(1);
+        items.add("y");
+        assertEquals("[{a=1.5, b=[]}, x, {}, y]", items.toString());
+        root.put("id", 8);
+        root.remove("big");
+        assertEquals(8, root.get("id"));
+        assertEquals(5, root.size());
+        Path.fromString("items[0].a").set(root, 2);
+        assertEquals(2, Path.fromString("items[0].a").get(root));
+    }
+
+    @Test
+    public void shouldMaterializeThroughEntriesAndIterators() {
+        Map<String, Object> root = NodeUtils.toObject(parser.parseLazy("{\"a\":1,\"b\":2,\"c\":3,\"d\":4}"));
+        Iterator<Map.Entry<String, Object>> entries = root.entrySet().iterator();
+        Map.Entry<String, Object> first = entries.next();
+        assertEquals(1, first.setValue(10));
+        assertEquals(10, first.getValue());
+        assertEquals(10, root.get("a"));
+        entries.next();
+        entries.remove();
+        assertEquals("c=3", entries.next().toString());
+        assertTrue(entries.hasNext());
+        assertEquals("{a=10, c=3, d=4}", root.toString());
+
+        root = NodeUtils.toObject(parser.parseLazy("{\"a\":1,\"b\":2,\"c\":3}"));
+        for (Iterator<String> keys = root.keySet().iterator(); keys.hasNext();) {
+            if (!keys.next().equals("b")) {
+                keys.remove();
+            }
+        }
+        assertEquals("{b=2}", root.toString());
+        root.values().remove(2);
+        assertTrue(root.isEmpty());
+    }
+
+    @Test
+    public void shouldIndexScalarDocuments() {
+        assertEquals("text", parser.parseLazy("\"text\""));
+        assertEquals(42, parser.parseLazy(" 42 "));
+    }
+
+    @Test(expected = ParserException.class)
+    public void shouldRejectUnbalancedDocuments() {
+        parser.parseLazy("{\"a\":[1,2}");
+    }
+
+    @Test(expected = ParserException.class)
+    public void shouldRejectValuesAsNames() {
+        parser.parseLazy("{1:2}");
+    }
+
+    @Test(expected = ParserException.class)
+    public void shouldRejectTrailingContent() {
+        parser.parseLazy("{} {}");
+    }
+
+    @Test
+    public void shouldRejectNamesWithoutValues() {
+        String[][] cases = { { "{\"a\"}", "Expected a value at 4" }, { "{\"a\":}", "Expected a value at 5" },
+                { "{\"a\":1,\"b\"}", "Expected a value at 10" }, { "[{\"x\":[],\"y\"}]", "Expected a value at 12" } };
+        for (String[] c : cases) {
+            try {
+                parser.parseLazy(c[0]);
+                fail(c[0]);
+            } catch (ParserException ex) {
+                assertEquals(c[0], c[1], ex.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void shouldKeepTheLastOfDuplicateNames() {
+        String document = "{\"a\":1,\"b\":2,\"a\":3,\"\\u0061\":4,\"c\":{\"x\":1,\"x\":[2]},\"é\":5,\"\\u00e9\":6}";
+        Map<String, Object> lazy = NodeUtils.toObject(parser.parseLazy(document));
+        assertEquals(parser.parse(document), lazy);
+        assertEquals(4, lazy.size());
+        assertEquals(4, lazy.get("a"));
+        assertEquals(6, lazy.get("é"));
+        assertEquals("{x=[2]}", lazy.get("c").toString());
+        JsonParser ordered = new JsonParser(new OrderedNodeFactory());
+        assertEquals("{a=4, b=2, c={x=[2]}, é=6}", ordered.parseLazy(document).toString());
+        assertEquals(ordered.parse(document).toString(), ordered.parseLazy(document).toString());
+
+        StringBuilder sb = new StringBuilder("{");
+        for (int t = 0; t < 300; t++) {
+            sb.append(t == 0 ? "" : ",").append("\"k").append(t % 70).append("\":").append(t);
+        }
+        document = sb.append("}").toString();
+        assertEquals(ordered.parse(document).toString(), ordered.parseLazy(document).toString());
+    }
+
+    @Test(expected = ParserException.class)
+    public void shouldRejectInvalidLiteralsWhileIndexing() {
+        parser.parseLazy("{\"a\":1,\"b\":nope}");
+    }
+
+    @Test
+    public void shouldRejectWhatTheParserRejects() {
+        String[] documents = { "{\"a\" \"b\"}", "{\"a\":1 \"b\":2}", "{\"a\" 1}", "{{}}", "{\"a\":1 2}", "{:1}", "[tru]",
+            "[12345678901234567890]", "[1e5x]", "[-]", "[\"a\" 1 \"b\"]", "{\"a\":[] 1}", "[\"\\x\"]", "[\"\\u12g4\"]", "{\"\\q\":1}",
+            "[\"\\u00e9\\b\\f\\n\\r\\t\\/\\\"\\\\ caf\u00e9 \ud83d\ude00 \\ud83d\\ude00\"]",
+            // tolerated by the parser, so by the tape as well
+            "[1 2]", "[1,,2]", "[1,]", "[\"a\":1]", "{\"a\":1,}", "{\"a\"::1}", "{\"a\" {}}", "{\"a\":[] \"b\":2}",
+            "[+1]", "[1.]", "[1.5f]", "[-0,1E400,123456789012345678]" };
+        for (String document : documents) {
+            Object expected;
+            try {
+                expected = parser.parse(document);
+            } catch (RuntimeException ex) {
+                try {
+                    fail(document + " indexed as " + parser.parseLazy(document));
+                } catch (ParserException lazy) {
+                    // rejected by both
+                }
+                continue;
+            }
+            assertEquals(document, expected, parser.parseLazy(document));
+        }
+        JsonParser lazyNumbers = new JsonParser(new JsonTokenizer(JsonTokenizer.NumberMode.LAZY));
+        assertEquals("[12345678901234567890]", lazyNumbers.parseLazy("[12345678901234567890]").toString());
+        try {
+            lazyNumbers.parseLazy("[1.]");
+            fail();
+        } catch (ParserException ex) {
+            assertEquals("Unknown value '1.' at 3", ex.getMessage());
+        }
+    }
+
+}
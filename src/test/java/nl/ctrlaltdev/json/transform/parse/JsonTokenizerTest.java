@@ -16,17 +16,30 @@
 package nl.ctrlaltdev.json.transform.parse;
 
 import static org.junit.Assert.assertEquals;
-
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.List;
 
 import nl.ctrlaltdev.json.transform.parse.JsonTokenizer;
 import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.JsonToken;
+import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.JsonTokenType;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class JsonTokenizerTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private JsonTokenizer tokenizer;
     
     @Before
@@ -116,4 +129,35 @@ public class JsonTokenizerTest {
                 String.valueOf(results));
     }
 
+    @Test
+    public void shouldPullTokens() throws IOException {
+        JsonTokenSource source = tokenizer.tokens(new StringReader("{\"a\":[true]}"));
+        assertEquals(JsonTokenType.OBJECT_START, source.next());
+        assertEquals(JsonTokenType.NAME, source.next());
+        assertEquals("a", source.getValue());
+        assertEquals(JsonTokenType.ARRAY_START, source.next());
+        assertEquals(JsonTokenType.VALUE, source.next());
+        assertEquals(Boolean.TRUE, source.getValue());
+        assertEquals(JsonTokenType.ARRAY_END, source.next());
+        assertEquals(JsonTokenType.OBJECT_END, source.next());
+        assertNull(source.next());
+    }
+
+    @Test
+    public void shouldScanMappedFileInRegions() throws IOException {
+        String document = "{\"name\":\"v\u00e4lue\",\"list\":[12345,true,\"x\\ty\"]}";
+        File file = folder.newFile("regions.json");
+        Files.write(file.toPath(), document.getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            JsonTokenSource source = new Utf8TokenSource(tokenizer, channel, 3);
+            StringBuilder sb = new StringBuilder();
+            while (source.next() != null) {
+                sb.append("(" + source.getType() + ":" + source.getValue() + ")");
+            }
+            assertEquals("(OBJECT_START:null)(NAME:name)(VALUE:v\u00e4lue)(NAME:list)(ARRAY_START:null)"
+                    + "(VALUE:12345)(VALUE:true)(VALUE:x\ty)(ARRAY_END:null)(OBJECT_END:null)", sb.toString());
+            assertEquals(document.getBytes(StandardCharsets.UTF_8).length, source.getPosition());
+        }
+    }
+
 }
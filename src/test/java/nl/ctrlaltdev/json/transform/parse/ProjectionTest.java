@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import nl.ctrlaltdev.json.transform.path.Path;
+import nl.ctrlaltdev.json.transform.select.SelectBuilder;
+import nl.ctrlaltdev.json.transform.template.CallbackTemplate;
+import nl.ctrlaltdev.json.transform.template.handler.CompositeHandler;
+import nl.ctrlaltdev.json.transform.template.handler.PathHandler;
+import nl.ctrlaltdev.json.transform.template.handler.SelectHandler;
+import nl.ctrlaltdev.json.transform.util.NodeUtils;
+import nl.ctrlaltdev.json.transform.utils.TestUtils;
+
+import org.junit.Test;
+
+public class ProjectionTest {
+
+    private static final String DOCUMENT = "{\"id\":7,\"skip\":{\"a\":[1,{\"b\":\"]}\\\"[{\"}],\"c\":\"\\\\\"},"
+            + "\"items\":[{\"name\":\"x\",\"tags\":[\"t\"],\"price\":1.5},{\"price\":2,\"name\":\"y\"}],\"tail\":[[],{}]}";
+
+    @Test
+    public void shouldProjectPaths() {
+        JsonParser parser = new JsonParser(Projection.of(Path.fromString("id"), Path.fromString("items[1].name")));
+        assertEquals("{id=7, items=[null, {name=y}]}", String.valueOf(parser.parse(DOCUMENT)));
+    }
+
+    @Test
+    public void shouldProjectSelects() throws IOException {
+        Projection projection = Projection.of(SelectBuilder.fromJsonPath("$.items[*].price"),
+                SelectBuilder.select().root().property("tail").index(1).build());
+        JsonParser parser = new JsonParser(projection);
+        assertEquals("{items=[{price=1.5}, {price=2}], tail=[null, {}]}", String.valueOf(parser.parse(DOCUMENT)));
+        InputStream in = new ByteArrayInputStream(DOCUMENT.getBytes(StandardCharsets.UTF_8));
+        assertEquals("{items=[{price=1.5}, {price=2}], tail=[null, {}]}", String.valueOf(parser.parse(in)));
+    }
+
+    @Test
+    public void shouldKeepWholeDocumentForUnanchoredSelects() {
+        JsonParser parser = new JsonParser(Projection.of(SelectBuilder.select().property("name").build()));
+        assertEquals(new JsonParser().parse(DOCUMENT), parser.parse(DOCUMENT));
+    }
+
+    @Test
+    public void shouldKeepSubtreeFromFirstComplexSelector() {
+        Projection projection = new Projection().include("$.items..name");
+        assertEquals("{items=[{name=x, price=1.5, tags=[t]}, {name=y, price=2}]}", String.valueOf(new JsonParser(projection).parse(DOCUMENT)));
+    }
+
+    @Test
+    public void shouldSkipAcrossBufferBoundaries() throws IOException {
+        StringBuilder sb = new StringBuilder("{\"big\":[");
+        for (int t = 0; t < 20000; t++) {
+            sb.append("{\"s\":\"}]\\\\\\\"\",\"n\":[").append(t).append("]},");
+        }
+        sb.append("0],\"id\":1}");
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        JsonParser parser = new JsonParser(Projection.of(Path.fromString("id")));
+        assertEquals("{id=1}", String.valueOf(parser.parse(new ByteArrayInputStream(bytes))));
+        assertEquals("{id=1}", String.valueOf(parser.parse(sb.toString())));
+        parser = new JsonParser(Projection.of(Path.fromString("big[19999].n")));
+        List<Object> big = NodeUtils.toArray(NodeUtils.toObject(parser.parse(new ByteArrayInputStream(bytes))).get("big"));
+        assertEquals(20001, big.size());
+        assertEquals("{n=[19999]}", String.valueOf(big.get(19999)));
+    }
+
+    @Test
+    public void shouldProjectTemplateSources() {
+        Map<String, Object> template = TestUtils.parseJson("/json/template/composite-template.json");
+        Map<String, Object> source = TestUtils.parseJson("/json/template/source.json");
+        Projection projection = Projection.fromTemplate(template);
+        Map<String, Object> partial;
+        try (InputStream in = getClass().getResourceAsStream("/json/template/source.json")) {
+            partial = NodeUtils.toObject(new JsonParser(projection).parse(in));
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        CallbackTemplate fill = new CallbackTemplate(template, new CompositeHandler(new PathHandler(), new SelectHandler()));
+        assertEquals(fill.fill(source), fill.fill(partial));
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.parse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import nl.ctrlaltdev.json.transform.mapping.builder.PropertyMappingBuilder;
+import nl.ctrlaltdev.json.transform.merge.MergeFactory;
+import nl.ctrlaltdev.json.transform.parse.JsonTokenizer.JsonTokenType;
+import nl.ctrlaltdev.json.transform.path.Path;
+import nl.ctrlaltdev.json.transform.path.ValuePath;
+import nl.ctrlaltdev.json.transform.print.JsonPrinter;
+import nl.ctrlaltdev.json.transform.select.SelectBuilder;
+import nl.ctrlaltdev.json.transform.transforms.IdentityTransform;
+import nl.ctrlaltdev.json.transform.util.NodeUtils;
+import nl.ctrlaltdev.json.transform.util.OrderedNodeFactory;
+
+import org.junit.Test;
+
+public class RawJsonTest {
+
+    private static final String DOCUMENT = "{\"id\":42,\"body\":{\"b\" : [1, 2.50, \"\\u0041\\\"]\"],\"a\":null},\"list\":[{\"x\":1},\"y\",[ ]]}";
+
+    private final JsonParser parser = new JsonParser(new JsonTokenizer(), new OrderedNodeFactory(),
+            Projection.of(Path.fromString("id"), Path.fromString("list[1]")).passThrough());
+
+    @Test
+    public void shouldPrintPassedThroughSubtreesVerbatim() throws IOException {
+        Map<String, Object> doc = NodeUtils.toObject(parser.parse(DOCUMENT));
+        assertTrue(doc.get("body") instanceof RawJson);
+        assertEquals("{\"b\" : [1, 2.50, \"\\u0041\\\"]\"],\"a\":null}", doc.get("body").toString());
+        assertEquals(DOCUMENT, new JsonPrinter().toString(doc));
+        doc = NodeUtils.toObject(parser.parse(new StringReader(DOCUMENT)));
+        assertEquals(DOCUMENT, new JsonPrinter().toString(doc));
+        doc = NodeUtils.toObject(parser.parse(new ByteArrayInputStream(DOCUMENT.getBytes(StandardCharsets.UTF_8))));
+        assertEquals(DOCUMENT, new JsonPrinter().toString(doc));
+    }
+
+    @Test
+    public void shouldCaptureAcrossBufferBoundaries() throws IOException {
+        StringBuilder sb = new StringBuilder("{\"id\":1,\"big\":[");
+        for (int t = 0; t < 10000; t++) {
+            sb.append("{\"s\":\"\\\"ü]\",\"n\":").append(t).append("},");
+        }
+        sb.append("0]}");
+        String document = sb.toString();
+        Object doc = parser.parse(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(document, new JsonPrinter().toString(doc));
+        doc = parser.parse(new StringReader(document));
+        assertEquals(document, new JsonPrinter().toString(doc));
+    }
+
+    @Test
+    public void shouldCarryThroughIdentityAndMerge() {
+        Map<String, Object> doc = NodeUtils.toObject(parser.parse(DOCUMENT));
+        Map<String, Object> copy = NodeUtils.toObject(new IdentityTransform().apply(doc));
+        assertSame(doc.get("body"), copy.get("body"));
+        Map<String, Object> target = NodeUtils.newObject();
+        MergeFactory.join(Path.root().enter("copy")).merge(doc, target);
+        assertSame(doc.get("body"), NodeUtils.toObject(target.get("copy")).get("body"));
+        Object renamed = PropertyMappingBuilder.map().rename("id", "key").build().apply(doc);
+        assertSame(doc.get("body"), NodeUtils.toObject(renamed).get("body"));
+        assertFalse(((RawJson) doc.get("body")).isDecoded());
+    }
+
+    @Test
+    public void shouldDecodeWhenDescending() {
+        Map<String, Object> doc = NodeUtils.toObject(parser.parse(DOCUMENT));
+        assertEquals("A\"]", Path.fromString("body.b[2]").get(doc));
+        assertTrue(((RawJson) doc.get("body")).isDecoded());
+        Path.fromString("body.a").set(doc, "set");
+        Object expected = new JsonParser().parse(DOCUMENT.replace("null", "\"set\""));
+        assertEquals(expected, new JsonParser().parse(new JsonPrinter().toString(doc)));
+        assertEquals(new IdentityTransform().apply(doc), expected);
+    }
+
+    @Test
+    public void shouldRejectCustomTokenSourcesWhenPassingThrough() {
+        JsonTokenizer tokenizer = new JsonTokenizer() {
+            @Override
+            public JsonTokenSource tokens(byte[] document, int off, int len) {
+                final JsonTokenSource tokens = super.tokens(document, off, len);
+                return new JsonTokenSource() {
+                    @Override
+                    public JsonTokenType next() throws IOException {
+                        return tokens.next();
+                    }
+
+                    @Override
+                    public JsonTokenType getType() {
+                        return tokens.getType();
+                    }
+
+                    @Override
+                    public Object getValue() {
+                        return tokens.getValue();
+                    }
+
+                    @Override
+                    public CharSequence getText() {
+                        return tokens.getText();
+                    }
+
+                    @Override
+                    public long getPosition() {
+                        return tokens.getPosition();
+                    }
+
+                    @Override
+                    public void skipChildren() throws IOException {
+                        tokens.skipChildren();
+                    }
+
+                    @Override
+                    public void skipValue() throws IOException {
+                        tokens.skipValue();
+                    }
+                };
+            }
+        };
+        byte[] document = DOCUMENT.getBytes(StandardCharsets.UTF_8);
+        Projection projection = Projection.of(Path.fromString("id"));
+        Object doc = new JsonParser(tokenizer, new OrderedNodeFactory(), projection).parseParallel(document);
+        assertEquals(42L, ((Number) NodeUtils.toObject(doc).get("id")).longValue());
+        try {
+            new JsonParser(tokenizer, new OrderedNodeFactory(), projection.passThrough()).parseParallel(document);
+            fail();
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().startsWith("Passing subtrees through needs"));
+        }
+    }
+
+    @Test
+    public void shouldSelectIntoPassedThroughSubtrees() {
+        Map<String, Object> doc = NodeUtils.toObject(parser.parse(DOCUMENT));
+        List<ValuePath> results = SelectBuilder.fromJsonPath("$.body.b[*]").select(doc);
+        assertEquals(3, results.size());
+        assertEquals("A\"]", results.get(2).value());
+        assertEquals(Path.fromString("body.b[2]"), results.get(2).path());
+        assertEquals(1, SelectBuilder.fromJsonPath("$..x").select(doc).size());
+        assertTrue(((RawJson) doc.get("body")).isDecoded());
+    }
+
+}
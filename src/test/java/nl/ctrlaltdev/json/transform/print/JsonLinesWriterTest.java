@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.print;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import nl.ctrlaltdev.json.transform.parse.JsonLinesReader;
+import nl.ctrlaltdev.json.transform.parse.JsonParser;
+import nl.ctrlaltdev.json.transform.util.NodeUtils;
+
+import org.junit.Test;
+
+public class JsonLinesWriterTest {
+
+    private final List<Integer> flushes = new ArrayList<Integer>();
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream() {
+        @Override
+        public void flush() {
+            flushes.add(size());
+        }
+    };
+
+    @Test
+    public void shouldWriteCompactRecords() throws IOException {
+        Map<String, Object> object = NodeUtils.newObject();
+        object.put("a", Arrays.asList(1, "x\ny"));
+        object.put("b", null);
+        JsonLinesWriter writer = new JsonPrinter().lines(out);
+        assertEquals(2, writer.writeAll(Arrays.asList(object, "é").iterator()));
+        assertEquals(2, writer.writeAll(Arrays.<Object>asList(2.5, Arrays.asList()).stream()));
+        writer.write(null);
+        assertEquals(5, writer.getRecords());
+        assertEquals(0, out.size());
+        writer.close();
+        assertEquals("{\"a\":[1,\"x\\ny\"],\"b\":null}\n\"é\"\n2.5\n[]\nnull\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shouldFlushEverySoManyRecords() throws IOException {
+        JsonLinesWriter writer = new JsonPrinter().lines(out);
+        writer.setFlushRecords(1);
+        writer.write(1);
+        writer.write(22);
+        assertEquals(Arrays.asList(2, 5), flushes);
+        writer.setFlushRecords(3);
+        for (int t = 0; t < 7; t++) {
+            writer.write(t);
+        }
+        assertEquals(Arrays.asList(2, 5, 11, 17), flushes);
+        writer.flush();
+        assertEquals(Arrays.asList(2, 5, 11, 17, 19), flushes);
+    }
+
+    @Test
+    public void shouldFlushEverySoManyBytes() throws IOException {
+        JsonLinesWriter writer = new JsonPrinter().lines(out);
+        writer.setFlushBytes(10);
+        for (int t = 0; t < 10; t++) {
+            writer.write("abc");
+        }
+        assertEquals(Arrays.asList(12, 24, 36, 48, 60), flushes);
+    }
+
+    @Test
+    public void shouldReuseTheBufferForLargeOutput() throws IOException {
+        List<Object> documents = new ArrayList<Object>();
+        for (int t = 0; t < 2000; t++) {
+            Map<String, Object> object = NodeUtils.newObject();
+            object.put("id", t);
+            object.put("url", "https://example.com/" + t);
+            documents.add(t % 100 == 0 ? null : object);
+        }
+        JsonLinesWriter writer = new JsonPrinter(false, false).lines(Channels.newChannel(out));
+        writer.writeAll(documents.iterator());
+        writer.close();
+        JsonLinesReader reader = new JsonParser().lines(new ByteArrayInputStream(out.toByteArray()));
+        for (Object document : documents) {
+            assertEquals(document, reader.next());
+        }
+        assertEquals(2000, reader.getLine());
+    }
+
+}
@@ -15,13 +15,25 @@
  */
 package nl.ctrlaltdev.json.transform.print;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
-
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import nl.ctrlaltdev.json.transform.parse.JsonParser;
 import nl.ctrlaltdev.json.transform.print.JsonPrinter;
 import nl.ctrlaltdev.json.transform.util.NodeUtils;
+import nl.ctrlaltdev.json.transform.util.OrderedNodeFactory;
 
 import org.junit.Test;
 
@@ -102,4 +114,114 @@ public class JsonPrinterTest {
         assertEquals("{" + crlf + "  \"a\":\"b\"," + crlf + "  \"c\":1" + crlf + "}", printer.toPrettyString(value));
     }
 
+    @Test
+    public void shouldPinThePrettyLayout() {
+        String nl = System.getProperty("line.separator");
+        Object value = new JsonParser().parse("{\"a\":[1,[],{},[2,{\"b\":null}]],\"c\":{\"d\":\"x\"}}");
+        String expected = "{" + nl
+                + "  \"a\":[" + nl
+                + "    1," + nl
+                + "    []," + nl
+                + "    {}," + nl
+                + "    [" + nl
+                + "      2," + nl
+                + "      {" + nl
+                + "        \"b\":null" + nl
+                + "      }" + nl
+                + "    ]" + nl
+                + "  ]," + nl
+                + "  \"c\":{" + nl
+                + "    \"d\":\"x\"" + nl
+                + "  }" + nl
+                + "}";
+        assertEquals(expected, printer.toPrettyString(value));
+        assertEquals(expected, new String(printer.toPrettyBytes(value), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shouldPrintRepeatedValues() {
+        List<Object> array = NodeUtils.newArray();
+        array.add(Integer.valueOf(42));
+        array.add(Integer.valueOf(42));
+        assertEquals("[42,42]", printer.toString(array));
+    }
+
+    @Test
+    public void shouldPrintInIterationOrderOrSorted() {
+        Map<String, Object> value = new OrderedNodeFactory().newObject();
+        value.put("c", Integer.valueOf(1));
+        value.put("a", "b");
+        assertEquals("{\"c\":1,\"a\":\"b\"}", printer.toString(value));
+        assertEquals("{\"a\":\"b\",\"c\":1}", new JsonPrinter(true).toString(value));
+    }
+
+    @Test
+    public void shouldKeepSlashesWhenAsked() {
+        Map<String, Object> value = NodeUtils.newObject();
+        value.put("url", "https://example.com/");
+        assertEquals("{\"url\":\"https:\\/\\/example.com\\/\"}", printer.toString(value));
+        assertEquals("{\"url\":\"https://example.com/\"}", new JsonPrinter(false, false).toString(value));
+    }
+
+    @Test
+    public void shouldPrintFromSeveralThreads() throws InterruptedException {
+        final Map<String, Object> value = NodeUtils.newObject();
+        value.put("a", "b");
+        value.put("c", Integer.valueOf(1));
+        final List<String> results = new CopyOnWriteArrayList<String>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int r = 0; r < 1000; r++) {
+                        results.add(printer.toString(value));
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(4000, results.size());
+        for (String result : results) {
+            assertEquals("{\"a\":\"b\",\"c\":1}", result);
+        }
+        StringBuilder large = new StringBuilder();
+        for (int t = 0; t < JsonPrinter.MAX_RETAINED; t++) {
+            large.append('x');
+        }
+        assertEquals(JsonPrinter.MAX_RETAINED + 2, printer.toString(large.toString()).length());
+        assertEquals("[42,43]", printer.toString(Arrays.asList(42, 43)));
+    }
+
+    @Test
+    public void shouldPrintBytes() throws IOException {
+        Map<String, Object> value = NodeUtils.newObject();
+        value.put("a", "caf\u00e9 \u20ac");
+        value.put("b", Arrays.asList(1, null, new JsonParser().parse("{\"raw\":\"\u00e9\"}")));
+        String expected = printer.toString(value);
+        assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), printer.toBytes(value));
+        assertArrayEquals(printer.toPrettyString(value).getBytes(StandardCharsets.UTF_8), printer.toPrettyBytes(value));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        printer.write(value, out, false);
+        printer.write(value, Channels.newChannel(out), false);
+        assertEquals(expected + expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+        printer.write(value, buffer, false);
+        buffer.flip();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        assertEquals(expected, new String(bytes, StandardCharsets.UTF_8));
+        try {
+            printer.write(value, ByteBuffer.allocate(8), false);
+            fail();
+        } catch (BufferOverflowException ex) {
+            // expected
+        }
+    }
+
 }
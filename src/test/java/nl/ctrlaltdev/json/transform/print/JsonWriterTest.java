@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.print;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class JsonWriterTest {
+
+    private final StringWriter out = new StringWriter();
+
+    @Test
+    public void shouldWritePushedValues() throws IOException {
+        new JsonWriter(out).beginObject()
+            .name("a").value(1)
+            .name("b").beginArray().value("x").nullValue().value(true).value(2.5).beginObject().endObject().endArray()
+            .name("c").value((Number) null)
+            .endObject();
+        assertEquals("{\"a\":1,\"b\":[\"x\",null,true,2.5,{}],\"c\":null}", out.toString());
+    }
+
+    @Test
+    public void shouldWriteStructures() throws IOException {
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("z", new LinkedList<Object>(Arrays.<Object>asList(1, null, "q")));
+        map.put("a", Arrays.asList());
+        map.put("m", new HashMap<String, Object>());
+        new JsonWriter(out, false, true).value(map);
+        assertEquals("{\"a\":[],\"m\":{},\"z\":[1,null,\"q\"]}", out.toString());
+    }
+
+    @Test
+    public void shouldWriteNumbers() throws IOException {
+        new JsonWriter(out).value(Arrays.<Object>asList(1, -42L, (short) 7, 0.1, 1e23, -2.5e-5, 1.5f, new BigDecimal("1.10"), Long.MIN_VALUE));
+        assertEquals("[1,-42,7,0.1,1.0E23,-2.5E-5,1.5,1.10,-9223372036854775808]", out.toString());
+    }
+
+    @Test
+    public void shouldEscapeStrings() throws IOException {
+        new JsonWriter(out).beginArray()
+            .value("plain")
+            .value("\"q\" \\ a/b \b\f\n\r\t \u0000\u001f\u007f caf\u00e9")
+            .value("/")
+            .endArray();
+        assertEquals("[\"plain\",\"\\\"q\\\" \\\\ a\\/b \\b\\f\\n\\r\\t \\u0000\\u001f\u007f caf\u00e9\",\"\\/\"]",
+                out.toString());
+    }
+
+    @Test
+    public void shouldKeepSlashesWhenAsked() throws IOException {
+        new JsonWriter(out, false, false, false).value("https://example.com/a\"b");
+        assertEquals("\"https://example.com/a\\\"b\"", out.toString());
+    }
+
+    @Test
+    public void shouldPrettyPrint() throws IOException {
+        String nl = System.getProperty("line.separator");
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("a", Arrays.asList(1, Arrays.asList(2, 3), Arrays.asList()));
+        new JsonWriter(out, true).value(map);
+        assertEquals("{" + nl + "  \"a\":[" + nl + "    1," + nl + "    [" + nl + "      2," + nl + "      3" + nl + "    ]," + nl
+                + "    []" + nl + "  ]" + nl + "}", out.toString());
+    }
+
+    @Test
+    public void shouldRejectInvalidNesting() throws IOException {
+        JsonWriter writer = new JsonWriter(out).beginObject();
+        try {
+            writer.value(1);
+            fail();
+        } catch (IllegalStateException ex) {
+            assertEquals("Expected a name", ex.getMessage());
+        }
+        writer.name("a");
+        try {
+            writer.endObject();
+            fail();
+        } catch (IllegalStateException ex) {
+            assertEquals("Expected a value", ex.getMessage());
+        }
+        try {
+            writer.value(1).endArray();
+            fail();
+        } catch (IllegalStateException ex) {
+            assertEquals("Unexpected ]", ex.getMessage());
+        }
+        try {
+            writer.endObject().value(2);
+            fail();
+        } catch (IllegalStateException ex) {
+            assertEquals("The document has already been written", ex.getMessage());
+        }
+        assertEquals("{\"a\":1}", out.toString());
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.print;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class NumberFormatterTest {
+
+    private final char[] buf = new char[NumberFormatter.MAX_LENGTH];
+
+    @Test
+    public void shouldFormatLongs() {
+        long[] values = { 0, 1, -1, 9, 10, -10, 99, 100, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE };
+        for (long value : values) {
+            assertEquals(Long.toString(value), format(value));
+        }
+        Random random = new Random(42);
+        for (int t = 0; t < 100000; t++) {
+            long value = random.nextLong() >> random.nextInt(64);
+            assertEquals(Long.toString(value), format(value));
+        }
+    }
+
+    @Test
+    public void shouldFormatDoublesLikeToString() {
+        assertEquals("0.0", format(0.0));
+        assertEquals("-0.0", format(-0.0));
+        assertEquals("1.0", format(1.0));
+        assertEquals("-1.5", format(-1.5));
+        assertEquals("0.1", format(0.1));
+        assertEquals("123.456", format(123.456));
+        assertEquals("9999999.0", format(9999999.0));
+        assertEquals("1.0E7", format(1e7));
+        assertEquals("0.001", format(0.001));
+        assertEquals("1.0E-4", format(1e-4));
+        assertEquals("1.0E23", format(1e23));
+        assertEquals("0.002", format(2e-3));
+        assertEquals("9.007199254740992E15", format(9007199254740992.0));
+        assertEquals("4.9E-324", format(Double.MIN_VALUE));
+        assertEquals("2.2250738585072014E-308", format(Double.MIN_NORMAL));
+        assertEquals("1.7976931348623157E308", format(Double.MAX_VALUE));
+        assertEquals("NaN", format(Double.NaN));
+        assertEquals("-Infinity", format(Double.NEGATIVE_INFINITY));
+    }
+
+    @Test
+    public void shouldFormatShortestRoundTrips() {
+        Random random = new Random(42);
+        for (int t = 0; t < 1000000; t++) {
+            double value;
+            switch (t % 3) {
+            case 0:
+                value = Double.longBitsToDouble(random.nextLong());
+                break;
+            case 1:
+                value = Math.scalb(1.0, random.nextInt(2098) - 1074);
+                break;
+            default:
+                value = Double.parseDouble(random.nextInt(2000000) - 1000000 + "e" + (random.nextInt(40) - 20));
+                break;
+            }
+            if (Double.isNaN(value)) {
+                continue;
+            }
+            String str = format(value);
+            String expected = Double.toString(value);
+            assertEquals(expected, value, Double.parseDouble(str), 0.0);
+            // Double.toString before Java 19 does not always find the shortest digits
+            assertTrue(expected + " " + str, str.length() <= expected.length());
+            assertEquals(expected.indexOf('E') < 0, str.indexOf('E') < 0);
+        }
+    }
+
+    private String format(long value) {
+        return new String(buf, 0, NumberFormatter.format(value, buf));
+    }
+
+    private String format(double value) {
+        return new String(buf, 0, NumberFormatter.format(value, buf));
+    }
+
+}
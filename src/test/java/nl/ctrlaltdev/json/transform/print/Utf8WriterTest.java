@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.print;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class Utf8WriterTest {
+
+    private static final String TEXT = "ascii café € 😀 unpaired \ud83d and \ude00 end";
+
+    @Test
+    public void shouldEncodeLikeString() throws IOException {
+        Utf8Writer writer = new Utf8Writer();
+        writer.write(TEXT);
+        writer.write(TEXT.toCharArray(), 6, 5);
+        for (int t = 0; t < TEXT.length(); t++) {
+            writer.write(TEXT.charAt(t));
+        }
+        String expected = TEXT + TEXT.substring(6, 11) + TEXT;
+        assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), writer.toByteArray());
+        writer.reset();
+        assertEquals(0, writer.size());
+    }
+
+    @Test
+    public void shouldStreamAcrossTheBuffer() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 40000) {
+            sb.append(TEXT);
+        }
+        String text = sb.toString();
+        byte[] expected = text.getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Utf8Writer writer = new Utf8Writer(bytes);
+        writer.write(text);
+        writer.bytes().write(expected);
+        writer.flush();
+        assertEquals(2 * expected.length, bytes.size());
+        assertArrayEquals((text + text).getBytes(StandardCharsets.UTF_8), bytes.toByteArray());
+
+        bytes.reset();
+        writer = new Utf8Writer(Channels.newChannel(bytes));
+        for (int t = 0; t < text.length(); t += 7) {
+            writer.write(text, t, Math.min(7, text.length() - t));
+        }
+        writer.close();
+        assertArrayEquals(expected, bytes.toByteArray());
+    }
+
+}
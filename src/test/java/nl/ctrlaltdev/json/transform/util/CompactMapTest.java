@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class CompactMapTest {
+
+    @Test
+    public void shouldBehaveLikeAMap() {
+        for (int count : new int[] { 3, CompactMap.LINEAR_THRESHOLD, 100 }) {
+            CompactMap map = new CompactMap();
+            Map<String, Object> expected = new TreeMap<String, Object>();
+            for (int t = 0; t < count; t++) {
+                map.put("key" + t, Integer.valueOf(t));
+                expected.put("key" + t, Integer.valueOf(t));
+            }
+            assertEquals(expected, map);
+            assertEquals(expected.hashCode(), map.hashCode());
+            for (int t = 0; t < count; t++) {
+                assertEquals(Integer.valueOf(t), map.get("key" + t));
+            }
+            assertNull(map.get("missing"));
+            assertEquals(Integer.valueOf(1), map.put("key1", "one"));
+            assertEquals("one", map.get("key1"));
+            assertEquals(Integer.valueOf(0), map.remove("key0"));
+            assertFalse(map.containsKey("key0"));
+            assertEquals(count - 1, map.size());
+            assertEquals("one", map.get("key1"));
+        }
+    }
+
+    @Test
+    public void shouldKeepInsertionOrder() {
+        CompactMap map = new CompactMap();
+        map.put("b", Integer.valueOf(1));
+        map.put("a", null);
+        map.put("c", Integer.valueOf(3));
+        assertEquals("{b=1, a=null, c=3}", map.toString());
+        assertTrue(map.containsKey("a"));
+    }
+
+    @Test
+    public void shouldRemoveThroughIterator() {
+        CompactMap map = new CompactMap();
+        for (int t = 0; t < 20; t++) {
+            map.put("k" + t, Integer.valueOf(t));
+        }
+        Iterator<Map.Entry<String, Object>> it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            if (((Integer) it.next().getValue()).intValue() % 2 == 0) {
+                it.remove();
+            }
+        }
+        assertEquals(10, map.size());
+        assertEquals(Integer.valueOf(19), map.get("k19"));
+        assertNull(map.get("k18"));
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 E.Hooijmeijer / www.ctrl-alt-dev.nl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.ctrlaltdev.json.transform.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import nl.ctrlaltdev.json.transform.parse.JsonParser;
+import nl.ctrlaltdev.json.transform.visitor.AbstractVisitor;
+import nl.ctrlaltdev.json.transform.visitor.impl.IdentityVisitor;
+
+import org.junit.Test;
+
+public class ShapedMapTest {
+
+    private ShapedNodeFactory factory = new ShapedNodeFactory();
+
+    @Test
+    public void shouldShareShapesBetweenRecords() {
+        List<Object> records = NodeUtils.toArray(new JsonParser(factory).parse("[{\"a\":1,\"b\":2},{\"a\":3,\"b\":4},{\"b\":5,\"a\":6}]"));
+        Shape first = ((ShapedMap) records.get(0)).shape();
+        assertNotNull(first);
+        assertSame(first, ((ShapedMap) records.get(1)).shape());
+        assertEquals("{b=5, a=6}", records.get(2).toString());
+        Object copy = new AbstractVisitor().visit(records.get(1), new IdentityVisitor(factory));
+        assertSame(first, ((ShapedMap) copy).shape());
+        assertEquals(records.get(1), copy);
+    }
+
+    @Test
+    public void shouldBehaveLikeAMap() {
+        Map<String, Object> map = factory.newObject();
+        map.put("a", Integer.valueOf(1));
+        map.put("b", null);
+        map.put("c", Integer.valueOf(3));
+        assertEquals(Integer.valueOf(1), map.put("a", "x"));
+        assertEquals(null, map.remove("b"));
+        assertEquals("{a=x, c=3}", map.toString());
+        Map<String, Object> other = factory.newObject();
+        other.put("a", "x");
+        other.put("c", Integer.valueOf(3));
+        assertSame(((ShapedMap) other).shape(), ((ShapedMap) map).shape());
+        map.clear();
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void shouldFallBackWhenShapesRunOut() {
+        Map<String, Object> map = new ShapedNodeFactory(2, 64).newObject();
+        map.put("a", Integer.valueOf(1));
+        map.put("b", Integer.valueOf(2));
+        map.put("c", Integer.valueOf(3));
+        assertNull(((ShapedMap) map).shape());
+        assertEquals("{a=1, b=2, c=3}", map.toString());
+        assertEquals(Integer.valueOf(3), map.get("c"));
+    }
+
+    @Test
+    public void shouldNotSpendBudgetOnFailedTransitions() {
+        ShapedNodeFactory small = new ShapedNodeFactory(2, 64);
+        Shape root = ((ShapedMap) small.newObject()).shape();
+        for (int t = 0; t < 1000; t++) {
+            Map<String, Object> map = small.newObject();
+            map.put("k" + t, Integer.valueOf(t));
+        }
+        assertEquals(0, root.remaining());
+        Map<String, Object> map = small.newObject();
+        map.put("k0", Integer.valueOf(0));
+        assertSame(root.with("k0"), ((ShapedMap) map).shape());
+    }
+
+    @Test
+    public void shouldKeepIteratingWhenARemovalRunsOutOfShapes() {
+        ShapedNodeFactory small = new ShapedNodeFactory(3, 64);
+        Map<String, Object> map = small.newObject();
+        map.put("a", Integer.valueOf(1));
+        map.put("b", Integer.valueOf(2));
+        map.put("c", Integer.valueOf(3));
+        map.entrySet().removeIf(new Predicate<Map.Entry<String, Object>>() {
+            @Override
+            public boolean test(Map.Entry<String, Object> e) {
+                return !Integer.valueOf(2).equals(e.getValue());
+            }
+        });
+        assertNull(((ShapedMap) map).shape());
+        assertEquals("{b=2}", map.toString());
+
+        map = small.newObject();
+        map.put("a", Integer.valueOf(1));
+        map.put("b", Integer.valueOf(2));
+        map.put("c", Integer.valueOf(3));
+        map.put("d", Integer.valueOf(4));
+        Iterator<String> keys = map.keySet().iterator();
+        StringBuilder seen = new StringBuilder();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            seen.append(key);
+            if (!key.equals("c")) {
+                keys.remove();
+            }
+        }
+        assertEquals("abcd", seen.toString());
+        assertEquals("{c=3}", map.toString());
+    }
+
+}